@@ -0,0 +1,420 @@
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.net.httpserver.HttpServer;
+import com.weather.dto.WeatherResponse;
+import com.weather.factory.WeatherProviderFactory;
+import com.weather.service.CoarseClock;
+import com.weather.service.WeatherProvider;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Длительный прогон SDK через фабрику на популяции из 100k+ городов с распределением Ципфа
+ * против встроенной заглушки upstream.
+ * <p>
+ * Время сжато ускоренными часами SDK (sdk.clock.speed, по умолчанию в 60 раз), настройки при этом рабочие:
+ * TTL кэша 10 минут, опрос раз в 10 минут, заглушка публикует новое наблюдение каждые 10 минут по тем же часам.
+ * Час прогона - это двое с половиной суток работы SDK, сотни циклов TTL и опроса.
+ * <p>
+ * Раз в sample секунд пишется строка CSV: занятость кучи после GC, максимальная пауза GC,
+ * скорость выделения памяти, число потоков, отставание обновления кэша от upstream (в секундах часов SDK).
+ * В конце базовое окно после разогрева сравнивается с последним; при дрейфе за порог код выхода 1.
+ * <p>
+ * Запуск: scripts/soak.sh duration=6h cities=100000 rps=2000
+ */
+public class SoakHarness {
+    private static final int DRIFT_WINDOW = 5;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        int cities = Integer.parseInt(options.getOrDefault("cities", "100000"));
+        Duration duration = parseDuration(options.getOrDefault("duration", "30m"));
+        Duration warmup = parseDuration(options.getOrDefault("warmup", "5m"));
+        Duration sample = parseDuration(options.getOrDefault("sample", "10s"));
+        int rps = Integer.parseInt(options.getOrDefault("rps", "2000"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "8"));
+        double skew = Double.parseDouble(options.getOrDefault("skew", "1.0"));
+        long cadenceSeconds = Long.parseLong(options.getOrDefault("cadence.seconds", "600"));
+        Path csv = Path.of(options.getOrDefault("csv", "soak-" + System.currentTimeMillis() + ".csv"));
+        Thresholds thresholds = new Thresholds(options, cadenceSeconds);
+
+        Stub stub = Stub.start(cadenceSeconds);
+        Path config = writeConfig(stub.port, options);
+        System.setProperty("sdk.config.file", config.toString());
+
+        WeatherProviderFactory factory = WeatherProviderFactory.getInstance();
+        // Заглушка публикует наблюдения по часам SDK, иначе ускоренный кэш обгонял бы upstream
+        CoarseClock clock = factory.getClock();
+        stub.clock = clock;
+        long sdkStartedAt = clock.currentTimeMillis();
+        WeatherProvider provider = factory.getWeatherProvider();
+        Zipf zipf = new Zipf(cities, skew);
+
+        Metrics metrics = new Metrics();
+        AtomicLong requests = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        long endAt = System.nanoTime() + duration.toNanos();
+        ExecutorService load = Executors.newFixedThreadPool(threads);
+        long perThreadIntervalNanos = TimeUnit.SECONDS.toNanos(1) * threads / Math.max(1, rps);
+        for (int i = 0; i < threads; i++) {
+            load.execute(() -> {
+                long next = System.nanoTime();
+                while (next < endAt) {
+                    try {
+                        provider.getWeather("city-" + zipf.next());
+                    } catch (RuntimeException e) {
+                        errors.incrementAndGet();
+                    }
+                    requests.incrementAndGet();
+                    next += perThreadIntervalNanos;
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+            });
+        }
+
+        List<Sample> samples = new ArrayList<>();
+        long startedAt = System.nanoTime();
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(csv))) {
+            out.println("elapsed_s,sdk_elapsed_s,heap_used_mb,heap_after_gc_mb,gc_max_pause_ms,gc_pause_total_ms,"
+                    + "alloc_mb_per_s,threads,cache_size,refresh_lag_p99_s,refresh_lag_max_s,requests,errors,upstream_calls");
+            while (System.nanoTime() < endAt) {
+                Thread.sleep(sample.toMillis());
+                Sample s = metrics.sample(sample.toMillis());
+                long[] lag = refreshLag(provider, stub, Math.min(cities, 1000));
+                s.lagP99Seconds = lag[0];
+                s.lagMaxSeconds = lag[1];
+                s.elapsedSeconds = (System.nanoTime() - startedAt) / 1_000_000_000L;
+                s.sdkElapsedSeconds = (clock.currentTimeMillis() - sdkStartedAt) / 1000;
+                s.cacheSize = provider.getCacheSize();
+                samples.add(s);
+                out.printf("%d,%d,%.1f,%.1f,%d,%d,%.1f,%d,%d,%d,%d,%d,%d,%d%n", s.elapsedSeconds,
+                        s.sdkElapsedSeconds, mb(s.heapUsed),
+                        mb(s.heapAfterGc), s.gcMaxPauseMillis, s.gcPauseTotalMillis, mb(s.allocBytesPerSecond),
+                        s.threads, s.cacheSize, s.lagP99Seconds, s.lagMaxSeconds, requests.get(), errors.get(),
+                        stub.calls.get());
+                out.flush();
+            }
+        }
+
+        load.shutdown();
+        load.awaitTermination(30, TimeUnit.SECONDS);
+        factory.shutdownAll();
+        stub.server.stop(0);
+
+        List<String> failures = thresholds.check(samples, warmup.toSeconds());
+        System.out.println("Samples written to " + csv.toAbsolutePath());
+        System.out.printf("Requests: %d, errors: %d, upstream calls: %d%n", requests.get(), errors.get(),
+                stub.calls.get());
+        if (failures.isEmpty()) {
+            System.out.println("SOAK PASSED");
+            System.exit(0);
+        }
+        failures.forEach(failure -> System.out.println("FAIL: " + failure));
+        System.exit(1);
+    }
+
+    /**
+     * Отставание кэша от upstream по самым популярным городам: на сколько секунд опубликованное
+     * заглушкой наблюдение новее закэшированного
+     */
+    private static long[] refreshLag(WeatherProvider provider, Stub stub, int hotCities) {
+        long published = stub.currentDt();
+        long[] lags = new long[hotCities];
+        int count = 0;
+        for (int rank = 0; rank < hotCities; rank++) {
+            WeatherResponse cached = provider.getCachedWeather("city-" + rank);
+            if (cached != null && cached.getDatetime() != null) {
+                lags[count++] = Math.max(0, published - cached.getDatetime());
+            }
+        }
+        if (count == 0) {
+            return new long[]{0, 0};
+        }
+        Arrays.sort(lags, 0, count);
+        return new long[]{lags[(int) Math.min(count - 1, Math.ceil(count * 0.99) - 1)], lags[count - 1]};
+    }
+
+    private static Path writeConfig(int stubPort, Map<String, String> options) throws IOException {
+        Path file = Files.createTempFile("weather-soak", ".properties");
+        file.toFile().deleteOnExit();
+        Files.writeString(file, String.join("\n",
+                "openweather.api.key=soak_test_key_0000",
+                "openweather.api.keys=",
+                "openweather.api.url=http://127.0.0.1:" + stubPort,
+                "sdk.operating.mode=POLLING",
+                "sdk.cache.capacity=" + options.getOrDefault("cache.capacity", "20000"),
+                "sdk.cache.ttl.minutes=" + options.getOrDefault("cache.ttl.minutes", "10"),
+                "sdk.polling.interval.minutes=" + options.getOrDefault("polling.interval.minutes", "10"),
+                "sdk.clock.speed=" + options.getOrDefault("speed", "60"),
+                "sdk.history.points.per.city=" + options.getOrDefault("history.points", "8"),
+                "sdk.prewarm.cities=",
+                "sdk.prewarm.top.cities=100",
+                "sdk.prewarm.state.file=",
+                "sdk.config.reload.interval.seconds=0",
+                "sdk.trace.sample.rate=0",
+                ""));
+        return file;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got: " + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private static Duration parseDuration(String value) {
+        long amount = Long.parseLong(value.substring(0, value.length() - 1));
+        return switch (value.charAt(value.length() - 1)) {
+            case 's' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            case 'h' -> Duration.ofHours(amount);
+            case 'd' -> Duration.ofDays(amount);
+            default -> throw new IllegalArgumentException("Duration must end with s, m, h or d: " + value);
+        };
+    }
+
+    private static double mb(double bytes) {
+        return bytes / (1024 * 1024);
+    }
+
+    private static final class Sample {
+        long elapsedSeconds;
+        long sdkElapsedSeconds;
+        long heapUsed;
+        long heapAfterGc;
+        long gcMaxPauseMillis;
+        long gcPauseTotalMillis;
+        double allocBytesPerSecond;
+        int threads;
+        int cacheSize;
+        long lagP99Seconds;
+        long lagMaxSeconds;
+    }
+
+    /**
+     * Показатели JVM за интервал между вызовами sample
+     */
+    private static final class Metrics {
+        private final com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        private final AtomicLong maxPause = new AtomicLong();
+        private final AtomicLong totalPause = new AtomicLong();
+        private long lastAllocated;
+
+        Metrics() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()) {
+                    heapPools.add(pool);
+                }
+            }
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                // Бины параллельных циклов (G1 Concurrent GC, ZGC Cycles) сообщают длительность цикла, а не паузы
+                if (gc.getName().contains("Concurrent") || gc.getName().contains("Cycles")) {
+                    continue;
+                }
+                ((NotificationEmitter) gc).addNotificationListener((notification, handback) -> {
+                    if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                        long pause = GarbageCollectionNotificationInfo
+                                .from((CompositeData) notification.getUserData()).getGcInfo().getDuration();
+                        maxPause.accumulateAndGet(pause, Math::max);
+                        totalPause.addAndGet(pause);
+                    }
+                }, null, null);
+            }
+            lastAllocated = threadBean.getTotalThreadAllocatedBytes();
+        }
+
+        Sample sample(long intervalMillis) {
+            Sample s = new Sample();
+            s.heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            for (MemoryPoolMXBean pool : heapPools) {
+                if (pool.getCollectionUsage() != null) {
+                    s.heapAfterGc += pool.getCollectionUsage().getUsed();
+                }
+            }
+            s.gcMaxPauseMillis = maxPause.getAndSet(0);
+            s.gcPauseTotalMillis = totalPause.getAndSet(0);
+            long allocated = threadBean.getTotalThreadAllocatedBytes();
+            s.allocBytesPerSecond = (allocated - lastAllocated) * 1000.0 / intervalMillis;
+            lastAllocated = allocated;
+            s.threads = threadBean.getThreadCount();
+            return s;
+        }
+    }
+
+    /**
+     * Пороги дрейфа: последнее окно против базового окна сразу после разогрева
+     */
+    private static final class Thresholds {
+        final double heapGrowth;
+        final long heapSlackBytes;
+        final long maxPauseMillis;
+        final double allocGrowth;
+        final int threadGrowth;
+        final long maxLagSeconds;
+
+        Thresholds(Map<String, String> options, long cadenceSeconds) {
+            heapGrowth = Double.parseDouble(options.getOrDefault("max.heap.growth", "0.25"));
+            heapSlackBytes = Long.parseLong(options.getOrDefault("heap.slack.mb", "16")) * 1024 * 1024;
+            maxPauseMillis = Long.parseLong(options.getOrDefault("max.gc.pause.ms", "200"));
+            allocGrowth = Double.parseDouble(options.getOrDefault("max.alloc.growth", "0.5"));
+            threadGrowth = Integer.parseInt(options.getOrDefault("max.thread.growth", "8"));
+            // Сразу после публикации кэш отстаёт на целый период заглушки, пока город не опрошен
+            maxLagSeconds = Long.parseLong(options.getOrDefault("max.refresh.lag.seconds",
+                    String.valueOf(cadenceSeconds * 5 / 2)));
+        }
+
+        List<String> check(List<Sample> samples, long warmupSeconds) {
+            List<Sample> steady = samples.stream().filter(s -> s.elapsedSeconds >= warmupSeconds).toList();
+            List<String> failures = new ArrayList<>();
+            if (steady.size() < 2 * DRIFT_WINDOW) {
+                failures.add("run too short for drift analysis: " + steady.size() + " samples after warm-up");
+                return failures;
+            }
+            List<Sample> first = steady.subList(0, DRIFT_WINDOW);
+            List<Sample> last = steady.subList(steady.size() - DRIFT_WINDOW, steady.size());
+
+            long heapBase = median(first, s -> s.heapAfterGc);
+            long heapEnd = median(last, s -> s.heapAfterGc);
+            if (heapEnd > heapBase * (1 + heapGrowth) + heapSlackBytes) {
+                failures.add(String.format("heap after GC grew from %.1f MB to %.1f MB", mb(heapBase), mb(heapEnd)));
+            }
+            long allocBase = median(first, s -> (long) s.allocBytesPerSecond);
+            long allocEnd = median(last, s -> (long) s.allocBytesPerSecond);
+            if (allocEnd > allocBase * (1 + allocGrowth)) {
+                failures.add(String.format("allocation rate grew from %.1f MB/s to %.1f MB/s", mb(allocBase), mb(allocEnd)));
+            }
+            long threadsBase = median(first, s -> s.threads);
+            long threadsEnd = median(last, s -> s.threads);
+            if (threadsEnd > threadsBase + threadGrowth) {
+                failures.add("thread count grew from " + threadsBase + " to " + threadsEnd);
+            }
+            for (Sample s : steady) {
+                if (s.gcMaxPauseMillis > maxPauseMillis) {
+                    failures.add("GC pause of " + s.gcMaxPauseMillis + " ms at " + s.elapsedSeconds + " s");
+                }
+                if (s.lagP99Seconds > maxLagSeconds) {
+                    failures.add("refresh lag p99 of " + s.lagP99Seconds + " s at " + s.elapsedSeconds + " s");
+                }
+            }
+            return failures;
+        }
+
+        private static long median(List<Sample> window, java.util.function.ToLongFunction<Sample> metric) {
+            long[] values = window.stream().mapToLong(metric).sorted().toArray();
+            return values[values.length / 2];
+        }
+    }
+
+    /**
+     * Ранги городов с вероятностью, обратной рангу в степени skew
+     */
+    private static final class Zipf {
+        private final double[] cdf;
+
+        Zipf(int size, double skew) {
+            cdf = new double[size];
+            double sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += 1.0 / Math.pow(i + 1, skew);
+                cdf[i] = sum;
+            }
+            for (int i = 0; i < size; i++) {
+                cdf[i] /= sum;
+            }
+        }
+
+        int next() {
+            int index = Arrays.binarySearch(cdf, ThreadLocalRandom.current().nextDouble());
+            return index >= 0 ? index : Math.min(cdf.length - 1, -index - 1);
+        }
+    }
+
+    /**
+     * Заглушка upstream: наблюдение по любому городу с dt, сменяющимся раз в cadenceSeconds по часам SDK
+     */
+    private static final class Stub {
+        final HttpServer server;
+        final int port;
+        final long cadenceSeconds;
+        final AtomicLong calls = new AtomicLong();
+        volatile CoarseClock clock = CoarseClock.system();
+
+        private Stub(HttpServer server, long cadenceSeconds) {
+            this.server = server;
+            this.port = server.getAddress().getPort();
+            this.cadenceSeconds = cadenceSeconds;
+        }
+
+        long currentDt() {
+            long now = clock.currentTimeMillis() / 1000;
+            return now - now % cadenceSeconds;
+        }
+
+        static Stub start(long cadenceSeconds) throws IOException {
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 512);
+            Stub stub = new Stub(server, cadenceSeconds);
+            server.setExecutor(Executors.newFixedThreadPool(8));
+            server.createContext("/", exchange -> {
+                stub.calls.incrementAndGet();
+                String city = "unknown";
+                String query = exchange.getRequestURI().getRawQuery();
+                if (query != null) {
+                    for (String param : query.split("&")) {
+                        if (param.startsWith("q=")) {
+                            city = URLDecoder.decode(param.substring(2), StandardCharsets.UTF_8);
+                        }
+                    }
+                }
+                long dt = stub.currentDt();
+                double temp = 270 + Math.floorMod(city.hashCode() + dt, 300) / 10.0;
+                byte[] body = ("{\"weather\":[{\"id\":800,\"main\":\"Clear\",\"description\":\"clear sky\"}],"
+                        + "\"main\":{\"temp\":" + temp + ",\"feels_like\":" + (temp - 1) + "},\"visibility\":10000,"
+                        + "\"wind\":{\"speed\":3.6},\"dt\":" + dt + ",\"sys\":{\"sunrise\":" + (dt - 20000)
+                        + ",\"sunset\":" + (dt + 20000) + "},\"timezone\":0,\"name\":\"" + city + "\"}")
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            return stub;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+#!/usr/bin/env bash
+# Длительный прогон SDK: scripts/soak.sh duration=6h cities=100000 rps=2000 [ключ=значение ...]
+# Параметры и пороги описаны в scripts/SoakHarness.java. Код выхода 1 - показатели ушли за пороги.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+JAVA=${JAVA:-java}
+JAVA_OPTS=${JAVA_OPTS:--Xms512m -Xmx512m -XX:+UseG1GC}
+
+mvn -q -B compile
+CLASSPATH_FILE=target/soak.classpath
+mvn -q -B dependency:build-classpath -Dmdep.outputFile="$CLASSPATH_FILE" -Dmdep.includeScope=runtime
+
+# shellcheck disable=SC2086
+exec "$JAVA" $JAVA_OPTS -cp "target/classes:$(cat "$CLASSPATH_FILE")" scripts/SoakHarness.java "$@"
@@ -6,19 +6,79 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 
+/**
+ * Настройки SDK из config.properties на classpath. Если задано системное свойство sdk.config.file,
+ * значения из этого файла перекрывают встроенные; такой файл можно перечитать на ходу (reload).
+ * Экземпляр неизменяем: перечитывание возвращает новый снимок настроек.
+ */
 public class SdkConfig {
     private static final Logger logger = LoggerFactory.getLogger(SdkConfig.class);
     private static final String CONFIG_FILE = "config.properties";
+    private static final String CONFIG_FILE_PROPERTY = "sdk.config.file";
 
     private final Properties properties;
+    private final Path externalFile;
 
     public SdkConfig() {
-        this.properties = loadProperties();
+        this(externalFileFromSystemProperty());
         setupLogging();
     }
 
+    private SdkConfig(Path externalFile) {
+        this.externalFile = externalFile;
+        this.properties = loadProperties();
+        if (externalFile != null) {
+            loadExternalProperties(externalFile, properties);
+        }
+    }
+
+    private static Path externalFileFromSystemProperty() {
+        String file = System.getProperty(CONFIG_FILE_PROPERTY, "").trim();
+        return file.isEmpty() ? null : Path.of(file);
+    }
+
+    private static void loadExternalProperties(Path file, Properties props) {
+        try (InputStream input = Files.newInputStream(file)) {
+            props.load(input);
+            logger.info("Configuration loaded from {}", file);
+        } catch (IOException e) {
+            logger.error("Error loading configuration file {}, using built-in values", file, e);
+        }
+    }
+
+    /**
+     * Внешний файл настроек, который можно перечитывать; null, если не задан
+     */
+    public Path getExternalFile() {
+        return externalFile;
+    }
+
+    /**
+     * Перечитывает настройки из тех же источников
+     */
+    public SdkConfig reload() {
+        return new SdkConfig(externalFile);
+    }
+
+    /**
+     * Ключи, значения которых отличаются от другого снимка настроек
+     */
+    public Set<String> changedKeys(SdkConfig other) {
+        Set<String> keys = new HashSet<>(properties.stringPropertyNames());
+        keys.addAll(other.properties.stringPropertyNames());
+        keys.removeIf(key -> properties.getProperty(key, "").trim()
+                .equals(other.properties.getProperty(key, "").trim()));
+        return keys;
+    }
+
     private Properties loadProperties() {
         Properties props = new Properties();
         try (InputStream input = getClass().getClassLoader().getResourceAsStream(CONFIG_FILE)) {
@@ -38,11 +98,32 @@ public class SdkConfig {
 
     private void setDefaultProperties(Properties props) {
         props.setProperty("openweather.api.key", "demo_key");
+        props.setProperty("openweather.api.keys", "");
+        props.setProperty("sdk.api.key.calls.per.minute", "60");
+        props.setProperty("sdk.api.key.quarantine.minutes", "10");
         props.setProperty("openweather.api.url", "https://api.openweathermap.org/data/2.5");
         props.setProperty("sdk.operating.mode", "ON_DEMAND");
         props.setProperty("sdk.cache.capacity", "10");
         props.setProperty("sdk.cache.ttl.minutes", "10");
+        props.setProperty("sdk.cache.memory.budget.mb", "0");
+        props.setProperty("sdk.cache.tinylfu.enabled", "true");
+        props.setProperty("sdk.cache.stale.retention.minutes", "30");
         props.setProperty("sdk.polling.interval.minutes", "10");
+        props.setProperty("sdk.forecast.cache.capacity", "10");
+        props.setProperty("sdk.forecast.cache.ttl.minutes", "60");
+        props.setProperty("sdk.history.points.per.city", "0");
+        props.setProperty("sdk.history.memory.mb", "16");
+        props.setProperty("sdk.negative.cache.capacity", "1000");
+        props.setProperty("sdk.negative.cache.ttl.minutes", "5");
+        props.setProperty("sdk.provider.idle.timeout.minutes", "0");
+        props.setProperty("sdk.config.reload.interval.seconds", "10");
+        props.setProperty("sdk.prewarm.cities", "");
+        props.setProperty("sdk.prewarm.top.cities", "20");
+        props.setProperty("sdk.prewarm.state.file", "");
+        props.setProperty("sdk.prewarm.concurrency", "4");
+        props.setProperty("sdk.prewarm.rate.per.second", "5");
+        props.setProperty("sdk.trace.sample.rate", "0");
+        props.setProperty("sdk.virtual.threads.enabled", "false");
         props.setProperty("logging.output", "CONSOLE");
         props.setProperty("logging.level", "INFO");
     }
@@ -56,6 +137,33 @@ public class SdkConfig {
         return properties.getProperty("openweather.api.key");
     }
 
+    /**
+     * Пул ключей API через запятую; если задан, провайдер по умолчанию распределяет запросы между ними
+     */
+    public List<String> getApiKeys() {
+        List<String> keys = new ArrayList<>();
+        for (String key : properties.getProperty("openweather.api.keys", "").split(",")) {
+            if (!key.trim().isEmpty() && !keys.contains(key.trim())) {
+                keys.add(key.trim());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Бюджет запросов одного ключа пула в минуту
+     */
+    public int getApiKeyCallsPerMinute() {
+        return Integer.parseInt(properties.getProperty("sdk.api.key.calls.per.minute", "60"));
+    }
+
+    /**
+     * Сколько ключ, отклонённый upstream как неверный, не используется
+     */
+    public long getApiKeyQuarantineMinutes() {
+        return Long.parseLong(properties.getProperty("sdk.api.key.quarantine.minutes", "10"));
+    }
+
     public String getApiUrl() {
         return properties.getProperty("openweather.api.url");
     }
@@ -73,10 +181,170 @@ public class SdkConfig {
         return Long.parseLong(properties.getProperty("sdk.cache.ttl.minutes", "10"));
     }
 
+    /**
+     * Общий бюджет памяти кэшей всех провайдеров в мегабайтах; 0 - без ограничения
+     */
+    public long getCacheMemoryBudgetMb() {
+        return Long.parseLong(properties.getProperty("sdk.cache.memory.budget.mb", "0"));
+    }
+
+    public boolean isCacheTinyLfuEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("sdk.cache.tinylfu.enabled", "true"));
+    }
+
+    /**
+     * Сколько хранить данные после истечения TTL, чтобы отдать их вызову, не успевающему к дедлайну
+     */
+    public long getCacheStaleRetentionMinutes() {
+        return Long.parseLong(properties.getProperty("sdk.cache.stale.retention.minutes", "30"));
+    }
+
     public long getPollingIntervalMinutes() {
         return Long.parseLong(properties.getProperty("sdk.polling.interval.minutes", "10"));
     }
 
+    public int getForecastCacheCapacity() {
+        return Integer.parseInt(properties.getProperty("sdk.forecast.cache.capacity", "10"));
+    }
+
+    public long getForecastCacheTtlMinutes() {
+        return Long.parseLong(properties.getProperty("sdk.forecast.cache.ttl.minutes", "60"));
+    }
+
+    /**
+     * Размер истории наблюдений на город; 0 - история выключена
+     */
+    public int getHistoryPointsPerCity() {
+        return Integer.parseInt(properties.getProperty("sdk.history.points.per.city", "0"));
+    }
+
+    public long getHistoryMemoryMb() {
+        return Long.parseLong(properties.getProperty("sdk.history.memory.mb", "16"));
+    }
+
+    public int getNegativeCacheCapacity() {
+        return Integer.parseInt(properties.getProperty("sdk.negative.cache.capacity", "1000"));
+    }
+
+    public long getNegativeCacheTtlMinutes() {
+        return Long.parseLong(properties.getProperty("sdk.negative.cache.ttl.minutes", "5"));
+    }
+
+    public long getProviderIdleTimeoutMinutes() {
+        return Long.parseLong(properties.getProperty("sdk.provider.idle.timeout.minutes", "0"));
+    }
+
+    /**
+     * Предел одновременных запросов к API для всех провайдеров вместе
+     */
+    public int getUpstreamMaxConcurrent() {
+        return Integer.parseInt(properties.getProperty("sdk.upstream.max.concurrent", "8"));
+    }
+
+    /**
+     * Цель по задержке промаха кэша у пользователя; выше неё фоновые запросы притормаживаются
+     */
+    public long getUpstreamInteractiveLatencyTargetMs() {
+        return Long.parseLong(properties.getProperty("sdk.upstream.interactive.latency.target.ms", "1000"));
+    }
+
+    /**
+     * Как часто проверять изменение внешнего файла настроек; 0 - не перечитывать
+     */
+    public long getConfigReloadIntervalSeconds() {
+        return Long.parseLong(properties.getProperty("sdk.config.reload.interval.seconds", "10"));
+    }
+
+    /**
+     * Статический список городов для прогрева кэша при старте, через запятую
+     */
+    public List<String> getPrewarmCities() {
+        List<String> cities = new ArrayList<>();
+        for (String city : properties.getProperty("sdk.prewarm.cities", "").split(",")) {
+            if (!city.trim().isEmpty()) {
+                cities.add(city.trim());
+            }
+        }
+        return cities;
+    }
+
+    /**
+     * Список городов OpenWeatherMap (city.list.json или .json.gz) для подсказок и поиска по id; пусто - каталога нет
+     */
+    public String getCityCatalogFile() {
+        return properties.getProperty("sdk.city.catalog.file", "").trim();
+    }
+
+    /**
+     * Файл бинарного индекса каталога; по умолчанию рядом со списком городов
+     */
+    public String getCityCatalogIndexFile() {
+        String index = properties.getProperty("sdk.city.catalog.index.file", "").trim();
+        return index.isEmpty() && !getCityCatalogFile().isEmpty() ? getCityCatalogFile() + ".idx" : index;
+    }
+
+    /**
+     * Сколько самых запрашиваемых городов прогревать при старте; 0 - учёт популярности выключен
+     */
+    public int getPrewarmTopCities() {
+        return Integer.parseInt(properties.getProperty("sdk.prewarm.top.cities", "20"));
+    }
+
+    /**
+     * Файл, в котором сохраняется статистика популярных городов между запусками; пусто - не сохранять
+     */
+    public String getPrewarmStateFile() {
+        return properties.getProperty("sdk.prewarm.state.file", "").trim();
+    }
+
+    public int getPrewarmConcurrency() {
+        return Integer.parseInt(properties.getProperty("sdk.prewarm.concurrency", "4"));
+    }
+
+    public double getPrewarmRatePerSecond() {
+        return Double.parseDouble(properties.getProperty("sdk.prewarm.rate.per.second", "5"));
+    }
+
+    /**
+     * Выборочная трассировка попаданий в кэш: логируется каждое N-е; 0 - выключена
+     */
+    public int getTraceSampleRate() {
+        return Integer.parseInt(properties.getProperty("sdk.trace.sample.rate", "0"));
+    }
+
+    /**
+     * Выполнять блокирующий ввод-вывод SDK и обработку запросов web-demo на виртуальных потоках
+     */
+    public boolean isVirtualThreadsEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("sdk.virtual.threads.enabled", "false"));
+    }
+
+    /**
+     * Во сколько раз часы SDK (сроки кэша, опрос, история) идут быстрее реального времени; больше 1 - только для
+     * длительных прогонов
+     */
+    public double getClockSpeed() {
+        return Double.parseDouble(properties.getProperty("sdk.clock.speed", "1"));
+    }
+
+    /**
+     * Начальный предел одновременных промахов кэша в web-demo; 0 - контроль допуска выключен
+     */
+    public int getAdmissionInitialLimit() {
+        return Integer.parseInt(properties.getProperty("web.admission.initial.limit", "20"));
+    }
+
+    public int getAdmissionMaxLimit() {
+        return Integer.parseInt(properties.getProperty("web.admission.max.limit", "200"));
+    }
+
+    /**
+     * Промах дольше этого времени считается признаком перегрузки и уменьшает предел
+     */
+    public long getAdmissionLatencyTargetMs() {
+        return Long.parseLong(properties.getProperty("web.admission.latency.target.ms", "2000"));
+    }
+
     public String getLoggingOutput() {
         return properties.getProperty("logging.output", "CONSOLE");
     }
@@ -0,0 +1,69 @@
+package com.weather.config;
+
+import java.util.Locale;
+
+/**
+ * Системы единиц ответа. Upstream всегда запрашивается в STANDARD (Кельвины, м/с),
+ * остальные считаются локально из того же закэшированного наблюдения.
+ */
+public enum Units {
+    STANDARD,
+    METRIC,
+    IMPERIAL;
+
+    private static final double KELVIN_OFFSET = 273.15;
+    private static final double MPH_PER_METER_PER_SECOND = 2.2369362920544;
+
+    /**
+     * Переводит температуру из Кельвинов
+     */
+    public Double convertTemperature(Double kelvin) {
+        if (kelvin == null || this == STANDARD) {
+            return kelvin;
+        }
+        double celsius = kelvin - KELVIN_OFFSET;
+        return round(this == METRIC ? celsius : celsius * 9 / 5 + 32);
+    }
+
+    /**
+     * Переводит скорость ветра из м/с
+     */
+    public Double convertSpeed(Double metersPerSecond) {
+        if (metersPerSecond == null || this != IMPERIAL) {
+            return metersPerSecond;
+        }
+        return round(metersPerSecond * MPH_PER_METER_PER_SECOND);
+    }
+
+    /**
+     * Переводит температуру из этой системы единиц в Кельвины, без округления
+     */
+    public double toKelvin(double temperature) {
+        return switch (this) {
+            case STANDARD -> temperature;
+            case METRIC -> temperature + KELVIN_OFFSET;
+            case IMPERIAL -> (temperature - 32) * 5 / 9 + KELVIN_OFFSET;
+        };
+    }
+
+    /**
+     * Переводит скорость из этой системы единиц в м/с, без округления
+     */
+    public double toMetersPerSecond(double speed) {
+        return this == IMPERIAL ? speed / MPH_PER_METER_PER_SECOND : speed;
+    }
+
+    /**
+     * Разбор значения параметра units без учёта регистра; null или пустая строка - STANDARD
+     */
+    public static Units fromString(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return STANDARD;
+        }
+        return Units.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
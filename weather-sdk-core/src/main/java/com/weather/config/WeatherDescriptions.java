@@ -0,0 +1,135 @@
+package com.weather.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * Локализованные описания погоды по id условия OpenWeatherMap.
+ * <p>
+ * Таблица загружается один раз из weather-descriptions.properties, поэтому одно закэшированное
+ * наблюдение обслуживает все языки без параметра lang и дополнительных запросов к API.
+ * Язык с индексом 0 - исходное английское описание upstream.
+ */
+public final class WeatherDescriptions {
+    private static final Logger logger = LoggerFactory.getLogger(WeatherDescriptions.class);
+    private static final String RESOURCE = "weather-descriptions.properties";
+    public static final String DEFAULT_LANGUAGE = "en";
+
+    private static final WeatherDescriptions INSTANCE = load();
+
+    private final List<String> languages;
+    private final Map<String, Integer> languageIndexes;
+    // Описания по индексу языка, затем по id условия
+    private final Map<Integer, String>[] descriptions;
+
+    private WeatherDescriptions(List<String> languages, Map<Integer, String>[] descriptions) {
+        this.languages = Collections.unmodifiableList(languages);
+        this.descriptions = descriptions;
+        this.languageIndexes = new HashMap<>();
+        for (int i = 0; i < languages.size(); i++) {
+            languageIndexes.put(languages.get(i), i);
+        }
+    }
+
+    public static WeatherDescriptions getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Поддерживаемые языки; первый - исходный язык upstream
+     */
+    public List<String> getLanguages() {
+        return languages;
+    }
+
+    public int getLanguageCount() {
+        return languages.size();
+    }
+
+    /**
+     * Индекс языка; null или пустая строка - язык по умолчанию
+     *
+     * @throws IllegalArgumentException если язык не поддерживается
+     */
+    public int languageIndex(String language) {
+        if (language == null || language.trim().isEmpty()) {
+            return 0;
+        }
+        Integer index = languageIndexes.get(language.trim().toLowerCase(Locale.ROOT));
+        if (index == null) {
+            throw new IllegalArgumentException("Unsupported language: " + language);
+        }
+        return index;
+    }
+
+    /**
+     * Описание условия на языке с данным индексом; если перевода нет, возвращается исходное
+     */
+    public String describe(Integer conditionId, int languageIndex, String upstreamDescription) {
+        if (languageIndex == 0 || conditionId == null) {
+            return upstreamDescription;
+        }
+        String localized = descriptions[languageIndex].get(conditionId);
+        return localized != null ? localized : upstreamDescription;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static WeatherDescriptions load() {
+        Properties props = new Properties();
+        try (InputStream input = WeatherDescriptions.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+            if (input != null) {
+                props.load(new InputStreamReader(input, StandardCharsets.UTF_8));
+            } else {
+                logger.warn("Descriptions file {} not found, only upstream descriptions are available", RESOURCE);
+            }
+        } catch (IOException e) {
+            logger.error("Error loading descriptions file, only upstream descriptions are available", e);
+        }
+
+        TreeSet<String> localized = new TreeSet<>();
+        for (String key : props.stringPropertyNames()) {
+            int dot = key.indexOf('.');
+            if (dot > 0) {
+                localized.add(key.substring(0, dot));
+            }
+        }
+        localized.remove(DEFAULT_LANGUAGE);
+
+        List<String> languages = new ArrayList<>();
+        languages.add(DEFAULT_LANGUAGE);
+        languages.addAll(localized);
+
+        Map<Integer, String>[] descriptions = new Map[languages.size()];
+        for (int i = 0; i < languages.size(); i++) {
+            descriptions[i] = new HashMap<>();
+        }
+        for (String key : props.stringPropertyNames()) {
+            int dot = key.indexOf('.');
+            int languageIndex = languages.indexOf(key.substring(0, Math.max(dot, 0)));
+            if (dot <= 0 || languageIndex <= 0) {
+                continue;
+            }
+            try {
+                descriptions[languageIndex].put(Integer.parseInt(key.substring(dot + 1)), props.getProperty(key));
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring malformed description key: {}", key);
+            }
+        }
+
+        logger.info("Weather descriptions loaded for languages: {}", languages);
+        return new WeatherDescriptions(languages, descriptions);
+    }
+}
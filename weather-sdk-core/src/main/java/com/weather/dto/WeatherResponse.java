@@ -3,10 +3,15 @@ package com.weather.dto;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.weather.config.Units;
+import com.weather.config.WeatherDescriptions;
 import com.weather.model.WeatherData;
 
 import java.util.Objects;
 
+/**
+ * Ответ SDK в требуемом формате. Экземпляры из кэша общие для всех вызывающих и не должны изменяться.
+ */
 @JsonPropertyOrder({
         "weather",
         "temperature",
@@ -40,6 +45,21 @@ public class WeatherResponse {
     private String name;
 
     public WeatherResponse(WeatherData weatherData) {
+        this(weatherData, Units.STANDARD);
+    }
+
+    /**
+     * Ответ в заданной системе единиц, пересчитанный из наблюдения в стандартных единицах
+     */
+    public WeatherResponse(WeatherData weatherData, Units units) {
+        this(weatherData, units, null);
+    }
+
+    /**
+     * Ответ в заданных единицах с описанием на заданном языке из локальной таблицы
+     * (null - исходное описание upstream)
+     */
+    public WeatherResponse(WeatherData weatherData, Units units, String language) {
         if (weatherData == null) {
             throw new IllegalArgumentException("WeatherData cannot be null");
         }
@@ -49,14 +69,16 @@ public class WeatherResponse {
         if (weatherData.getWeather() != null && !weatherData.getWeather().isEmpty()) {
             var firstWeather = weatherData.getWeather().get(0);
             this.weather.setMain(firstWeather.getMain());
-            this.weather.setDescription(firstWeather.getDescription());
+            WeatherDescriptions descriptions = WeatherDescriptions.getInstance();
+            this.weather.setDescription(descriptions.describe(firstWeather.getId(),
+                    descriptions.languageIndex(language), firstWeather.getDescription()));
         }
 
         // Temperature
         this.temperature = new TemperatureInfo();
         if (weatherData.getMain() != null) {
-            this.temperature.setTemp(weatherData.getMain().getTemp());
-            this.temperature.setFeelsLike(weatherData.getMain().getFeelsLike());
+            this.temperature.setTemp(units.convertTemperature(weatherData.getMain().getTemp()));
+            this.temperature.setFeelsLike(units.convertTemperature(weatherData.getMain().getFeelsLike()));
         }
 
         // Other fields
@@ -65,7 +87,7 @@ public class WeatherResponse {
         // Wind
         this.wind = new WindInfo();
         if (weatherData.getWind() != null) {
-            this.wind.setSpeed(weatherData.getWind().getSpeed());
+            this.wind.setSpeed(units.convertSpeed(weatherData.getWind().getSpeed()));
         }
 
         this.datetime = weatherData.getDatetime();
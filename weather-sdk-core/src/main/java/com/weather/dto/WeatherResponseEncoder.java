@@ -0,0 +1,99 @@
+package com.weather.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * Запись WeatherResponse напрямую в JsonGenerator, без рефлексии ObjectMapper.
+ * Порядок и имена полей совпадают с сериализацией Jackson, null-значения пишутся как null.
+ */
+public final class WeatherResponseEncoder {
+
+    private WeatherResponseEncoder() {
+    }
+
+    /**
+     * Пишет ответ как JSON-объект
+     */
+    public static void write(JsonGenerator generator, WeatherResponse response) throws IOException {
+        generator.writeStartObject();
+        writeFields(generator, response);
+        generator.writeEndObject();
+    }
+
+    /**
+     * Пишет поля ответа в уже открытый объект, чтобы вызывающий мог дописать свои поля
+     */
+    public static void writeFields(JsonGenerator generator, WeatherResponse response) throws IOException {
+        WeatherResponse.WeatherInfo weather = response.getWeather();
+        if (weather != null) {
+            generator.writeObjectFieldStart("weather");
+            generator.writeStringField("main", weather.getMain());
+            generator.writeStringField("description", weather.getDescription());
+            generator.writeEndObject();
+        } else {
+            generator.writeNullField("weather");
+        }
+
+        WeatherResponse.TemperatureInfo temperature = response.getTemperature();
+        if (temperature != null) {
+            generator.writeObjectFieldStart("temperature");
+            writeNumberField(generator, "temp", temperature.getTemp());
+            writeNumberField(generator, "feelsLike", temperature.getFeelsLike());
+            generator.writeEndObject();
+        } else {
+            generator.writeNullField("temperature");
+        }
+
+        writeNumberField(generator, "visibility", response.getVisibility());
+
+        WeatherResponse.WindInfo wind = response.getWind();
+        if (wind != null) {
+            generator.writeObjectFieldStart("wind");
+            writeNumberField(generator, "speed", wind.getSpeed());
+            generator.writeEndObject();
+        } else {
+            generator.writeNullField("wind");
+        }
+
+        writeNumberField(generator, "datetime", response.getDatetime());
+
+        WeatherResponse.SysInfo sys = response.getSys();
+        if (sys != null) {
+            generator.writeObjectFieldStart("sys");
+            writeNumberField(generator, "sunrise", sys.getSunrise());
+            writeNumberField(generator, "sunset", sys.getSunset());
+            generator.writeEndObject();
+        } else {
+            generator.writeNullField("sys");
+        }
+
+        writeNumberField(generator, "timezone", response.getTimezone());
+        generator.writeStringField("name", response.getName());
+    }
+
+    private static void writeNumberField(JsonGenerator generator, String name, Double value) throws IOException {
+        if (value != null) {
+            generator.writeNumberField(name, value);
+        } else {
+            generator.writeNullField(name);
+        }
+    }
+
+    private static void writeNumberField(JsonGenerator generator, String name, Long value) throws IOException {
+        if (value != null) {
+            generator.writeNumberField(name, value);
+        } else {
+            generator.writeNullField(name);
+        }
+    }
+
+    private static void writeNumberField(JsonGenerator generator, String name, Integer value) throws IOException {
+        if (value != null) {
+            generator.writeNumberField(name, value);
+        } else {
+            generator.writeNullField(name);
+        }
+    }
+}
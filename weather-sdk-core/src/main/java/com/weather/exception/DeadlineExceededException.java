@@ -0,0 +1,13 @@
+package com.weather.exception;
+
+import java.time.Duration;
+
+/**
+ * Ответ не получен до дедлайна вызывающего, а устаревших данных по городу в кэше нет
+ */
+public class DeadlineExceededException extends WeatherSDKException {
+
+    public DeadlineExceededException(String cityName, Duration deadline) {
+        super("Deadline of " + deadline.toMillis() + " ms exceeded for city: " + cityName);
+    }
+}
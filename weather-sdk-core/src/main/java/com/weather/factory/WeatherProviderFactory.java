@@ -4,20 +4,102 @@ import com.weather.config.OperatingMode;
 import com.weather.config.SdkConfig;
 import com.weather.service.ApiClient;
 import com.weather.service.CacheManager;
+import com.weather.service.CityCatalog;
+import com.weather.service.CoarseClock;
+import com.weather.service.ForecastCache;
+import com.weather.service.NegativeCache;
+import com.weather.service.ObservationHistory;
+import com.weather.service.PooledApiClient;
+import com.weather.service.PopularCities;
+import com.weather.service.TraceSampler;
+import com.weather.service.UpstreamDispatcher;
 import com.weather.service.WeatherProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
 
 public class WeatherProviderFactory {
     private static final Logger logger = LoggerFactory.getLogger(WeatherProviderFactory.class);
+    private static final int SCHEDULER_THREADS = 2;
+    private static final int BLOCKING_THREADS = 8;
+    private static final long POPULAR_CITIES_SAVE_MINUTES = 5;
+    private static final long CLOCK_TICK_MILLIS = 100;
+    // Отметка обращения под блокировкой ключа; лямбда без захвата создаётся один раз
+    private static final BiFunction<String, WeatherProvider, WeatherProvider> TOUCH = (key, provider) -> {
+        provider.touch();
+        return provider;
+    };
+    // Настройки, которые применяются к работающим провайдерам без перезапуска
+    private static final Set<String> LIVE_KEYS = Set.of("sdk.cache.capacity", "sdk.cache.ttl.minutes",
+            "sdk.polling.interval.minutes", "sdk.cache.memory.budget.mb");
 
     private static WeatherProviderFactory instance;
     private final ConcurrentHashMap<String, WeatherProvider> providers;
 
+    // Общие для всех провайдеров ресурсы: конфигурация, планировщик и пул HTTP-соединений.
+    // Снимок конфигурации заменяется целиком при перечитывании файла
+    private volatile SdkConfig config;
+    // Ключ провайдера по умолчанию вычисляется при загрузке конфигурации, а не на каждый запрос
+    private volatile String defaultProviderKey;
+    private final Object reloadLock = new Object();
+    private long configFileModified;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService blockingExecutor;
+    private final boolean virtualThreads;
+    private final CoarseClock clock;
+    // Соединения и квота API общие, поэтому и очередь запросов к ним одна на все провайдеры
+    private final UpstreamDispatcher upstreamDispatcher;
+    // HTTP-клиент с его потоком селектора создаётся вместе с первым провайдером, а не при старте
+    private HttpClient httpClient;
+    // Популярность городов общая для провайдеров и переживает перезапуск через файл состояния
+    private final PopularCities popularCities;
+    private final Path popularCitiesFile;
+    // Каталог городов отображается в память при первом обращении; неудачная загрузка не повторяется
+    private CityCatalog cityCatalog;
+    private boolean cityCatalogLoaded;
+
     private WeatherProviderFactory() {
         this.providers = new ConcurrentHashMap<>();
+        this.config = new SdkConfig();
+        this.defaultProviderKey = defaultProviderKey(config);
+        this.scheduler = createScheduler();
+        this.clock = CoarseClock.start(scheduler, CLOCK_TICK_MILLIS, config.getClockSpeed());
+        if (clock.getSpeed() != 1) {
+            logger.warn("SDK clock runs {} times faster than real time", clock.getSpeed());
+        }
+        this.virtualThreads = config.isVirtualThreadsEnabled();
+        if (virtualThreads) {
+            this.blockingExecutor = Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("WeatherSdkIo-", 0).factory());
+            logger.info("Blocking SDK I/O runs on virtual threads");
+        } else {
+            this.blockingExecutor = createBlockingExecutor();
+        }
+        this.upstreamDispatcher = new UpstreamDispatcher(config.getUpstreamMaxConcurrent(),
+                config.getUpstreamInteractiveLatencyTargetMs());
+        this.popularCities = new PopularCities(config.getPrewarmTopCities());
+        this.popularCitiesFile = config.getPrewarmStateFile().isEmpty() ? null : Path.of(config.getPrewarmStateFile());
+        popularCities.load(popularCitiesFile);
+        scheduleIdleReclamation();
+        schedulePopularCitiesSave();
+        scheduleConfigReload();
         logger.info("WeatherProviderFactory initialized");
     }
 
@@ -37,21 +119,104 @@ public class WeatherProviderFactory {
         String normalizedApiKey = apiKey.trim();
         String providerKey = generateProviderKey(normalizedApiKey, mode);
 
-        return providers.computeIfAbsent(providerKey, key -> {
+        WeatherProvider existing = providers.computeIfPresent(providerKey, TOUCH);
+        if (existing != null) {
+            return existing;
+        }
+
+        WeatherProvider provider = providers.computeIfAbsent(providerKey, key -> {
             logger.info("Creating new WeatherProvider for API key: {} (mode: {})",
                     maskApiKey(normalizedApiKey), mode);
+            return createProvider(normalizedApiKey, mode,
+                    new ApiClient(normalizedApiKey, config.getApiUrl(), httpClient()));
+        });
+        rebalanceMemoryQuotas();
+        return provider;
+    }
 
-            SdkConfig config = new SdkConfig();
-            ApiClient apiClient = new ApiClient(normalizedApiKey, config.getApiUrl());
-            CacheManager cacheManager = new CacheManager(config.getCacheCapacity(), config.getCacheTtlMinutes());
+    /**
+     * Провайдер поверх пула ключей: запросы распределяются между ключами с учётом их минутного бюджета
+     */
+    public WeatherProvider getPooledWeatherProvider(List<String> apiKeys, OperatingMode mode) {
+        List<String> normalizedKeys = new ArrayList<>();
+        if (apiKeys != null) {
+            for (String apiKey : apiKeys) {
+                if (apiKey != null && !apiKey.trim().isEmpty() && !normalizedKeys.contains(apiKey.trim())) {
+                    normalizedKeys.add(apiKey.trim());
+                }
+            }
+        }
+        if (normalizedKeys.isEmpty()) {
+            throw new IllegalArgumentException("API key pool cannot be null or empty");
+        }
+        if (normalizedKeys.size() == 1) {
+            return getWeatherProvider(normalizedKeys.get(0), mode);
+        }
 
-            return new WeatherProvider(normalizedApiKey, mode, apiClient, cacheManager);
+        String providerKey = poolProviderKey(normalizedKeys, mode);
+        WeatherProvider existing = providers.computeIfPresent(providerKey, TOUCH);
+        if (existing != null) {
+            return existing;
+        }
+
+        WeatherProvider provider = providers.computeIfAbsent(providerKey, key -> {
+            logger.info("Creating new WeatherProvider for a pool of {} API keys (mode: {})",
+                    normalizedKeys.size(), mode);
+            ApiClient apiClient = new PooledApiClient(normalizedKeys, config.getApiUrl(), httpClient(),
+                    config.getApiKeyCallsPerMinute(), config.getApiKeyQuarantineMinutes() * 60 * 1000);
+            return createProvider(normalizedKeys.get(0), mode, apiClient);
         });
+        rebalanceMemoryQuotas();
+        return provider;
+    }
+
+    private synchronized HttpClient httpClient() {
+        if (httpClient == null) {
+            httpClient = virtualThreads
+                    ? ApiClient.createHttpClient(blockingExecutor)
+                    : ApiClient.createHttpClient();
+        }
+        return httpClient;
     }
 
+    private WeatherProvider createProvider(String apiKey, OperatingMode mode, ApiClient apiClient) {
+        CacheManager cacheManager = new CacheManager(config.getCacheCapacity(), config.getCacheTtlMinutes(),
+                Long.MAX_VALUE, config.isCacheTinyLfuEnabled(), clock);
+        cacheManager.setStaleRetentionMinutes(config.getCacheStaleRetentionMinutes());
+        cacheManager.startExpirySweeper(scheduler);
+        NegativeCache negativeCache = new NegativeCache(config.getNegativeCacheCapacity(),
+                config.getNegativeCacheTtlMinutes(), clock);
 
+        ForecastCache forecastCache = new ForecastCache(config.getForecastCacheCapacity(),
+                config.getForecastCacheTtlMinutes(), clock);
+        ObservationHistory history = new ObservationHistory(config.getHistoryPointsPerCity(),
+                config.getHistoryMemoryMb() * 1024 * 1024, clock);
+
+        WeatherProvider created = new WeatherProvider(apiKey, mode, apiClient, cacheManager,
+                negativeCache, forecastCache, history, popularCities, scheduler, blockingExecutor,
+                upstreamDispatcher, config.getPollingIntervalMinutes(), new TraceSampler(config.getTraceSampleRate()));
+        created.prewarm(warmList(), config.getPrewarmConcurrency(), config.getPrewarmRatePerSecond());
+        return created;
+    }
+
+
+    /**
+     * Провайдер по настройкам конфигурации. Для уже созданного провайдера вызов не создаёт объектов:
+     * ключ вычислен заранее, остаётся один поиск в карте.
+     */
     public WeatherProvider getWeatherProvider() {
-        SdkConfig config = new SdkConfig();
+        String providerKey = defaultProviderKey;
+        if (providerKey != null) {
+            WeatherProvider existing = providers.computeIfPresent(providerKey, TOUCH);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        SdkConfig config = this.config;
+        List<String> apiKeys = config.getApiKeys();
+        if (!apiKeys.isEmpty()) {
+            return getPooledWeatherProvider(apiKeys, config.getOperatingMode());
+        }
         return getWeatherProvider(config.getApiKey(), config.getOperatingMode());
     }
 
@@ -66,7 +231,9 @@ public class WeatherProviderFactory {
 
         WeatherProvider provider = providers.remove(providerKey);
         if (provider != null) {
+            collectHotCities(provider);
             provider.shutdown();
+            rebalanceMemoryQuotas();
             logger.info("Removed and shutdown WeatherProvider for API key: {} (mode: {})",
                     maskApiKey(normalizedApiKey), mode);
         } else {
@@ -78,17 +245,291 @@ public class WeatherProviderFactory {
     public void shutdownAll() {
         logger.info("Shutting down all WeatherProvider instances");
 
-        providers.values().forEach(WeatherProvider::shutdown);
-        providers.clear();
+        // Провайдер сначала убирается из фабрики, чтобы getWeatherProvider не выдал уже остановленный
+        List<WeatherProvider> stopped = new ArrayList<>();
+        for (String providerKey : providers.keySet()) {
+            WeatherProvider provider = providers.remove(providerKey);
+            if (provider != null) {
+                stopped.add(provider);
+            }
+        }
+        stopped.forEach(this::collectHotCities);
+        popularCities.save(popularCitiesFile);
+        stopped.forEach(WeatherProvider::shutdown);
 
         logger.info("All WeatherProvider instances shutdown completed");
     }
 
+    /**
+     * Делит общий бюджет памяти кэшей поровну между активными провайдерами
+     */
+    private void rebalanceMemoryQuotas() {
+        long budgetBytes = config.getCacheMemoryBudgetMb() * 1024 * 1024;
+        if (budgetBytes <= 0) {
+            return;
+        }
+
+        int count = Math.max(1, providers.size());
+        long quota = budgetBytes / count;
+        providers.values().forEach(provider -> provider.setCacheMemoryQuota(quota));
+        logger.debug("Cache memory quota per provider: {} bytes ({} providers)", quota, count);
+    }
+
+    /**
+     * Города для прогрева: статический список из конфигурации, затем самые запрашиваемые, без повторов
+     */
+    private List<String> warmList() {
+        Set<String> cities = new LinkedHashSet<>(config.getPrewarmCities());
+        cities.addAll(popularCities.topCities());
+        return new ArrayList<>(cities);
+    }
+
+    /**
+     * Переносит попадания в кэш провайдера за прошедший период в общую популярность; промахи
+     * учитываются сразу. Каждое попадание попадает сюда один раз: счётчики кэша при сборе обнуляются.
+     */
+    private void collectHotCities(WeatherProvider provider) {
+        if (!popularCities.isEnabled()) {
+            return;
+        }
+        provider.drainHitCounts(popularCities.getTopCount()).forEach(popularCities::record);
+    }
+
+    private void schedulePopularCitiesSave() {
+        if (!popularCities.isEnabled()) {
+            return;
+        }
+        scheduler.scheduleAtFixedRate(() -> {
+            providers.values().forEach(this::collectHotCities);
+            popularCities.save(popularCitiesFile);
+        }, POPULAR_CITIES_SAVE_MINUTES, POPULAR_CITIES_SAVE_MINUTES, TimeUnit.MINUTES);
+        if (popularCitiesFile != null) {
+            logger.info("Popular cities are saved to {}", popularCitiesFile);
+        }
+    }
+
+    /**
+     * Очередь запросов к API с полосами приоритета, общая для всех провайдеров
+     */
+    public UpstreamDispatcher getUpstreamDispatcher() {
+        return upstreamDispatcher;
+    }
+
+    /**
+     * Каталог городов из sdk.city.catalog.file; null, если он не настроен или не загрузился
+     */
+    public synchronized CityCatalog getCityCatalog() {
+        if (!cityCatalogLoaded) {
+            cityCatalogLoaded = true;
+            String file = config.getCityCatalogFile();
+            if (!file.isEmpty()) {
+                try {
+                    cityCatalog = CityCatalog.open(Path.of(file), Path.of(config.getCityCatalogIndexFile()));
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Failed to load city catalog from {}: {}", file, e.getMessage());
+                }
+            }
+        }
+        return cityCatalog;
+    }
+
+    /**
+     * Часы SDK, общие для всех провайдеров: сроки кэша, опрос и отметки времени данных идут по ним
+     */
+    public CoarseClock getClock() {
+        return clock;
+    }
 
-    private String generateProviderKey(String apiKey, OperatingMode mode) {
+    public SdkConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Перечитывает внешний файл настроек и применяет изменённые значения к работающим провайдерам:
+     * ёмкость и TTL кэша, интервал опроса, бюджет памяти. Кэшированные данные сохраняются.
+     * Остальные настройки действуют только для провайдеров, созданных после перечитывания.
+     *
+     * @return true, если настройки изменились и приняты
+     */
+    public boolean reloadConfig() {
+        synchronized (reloadLock) {
+            SdkConfig current = config;
+            SdkConfig reloaded = current.reload();
+            Set<String> changed = reloaded.changedKeys(current);
+            if (changed.isEmpty()) {
+                return false;
+            }
+            try {
+                validateLiveSettings(reloaded);
+            } catch (IllegalArgumentException e) {
+                logger.error("Reloaded configuration rejected, keeping the current one: {}", e.getMessage());
+                return false;
+            }
+
+            config = reloaded;
+            defaultProviderKey = defaultProviderKey(reloaded);
+            if (changed.stream().anyMatch(LIVE_KEYS::contains)) {
+                providers.values().forEach(provider -> provider.reconfigure(reloaded.getCacheCapacity(),
+                        reloaded.getCacheTtlMinutes(), reloaded.getPollingIntervalMinutes()));
+                if (reloaded.getCacheMemoryBudgetMb() > 0) {
+                    rebalanceMemoryQuotas();
+                } else {
+                    providers.values().forEach(provider -> provider.setCacheMemoryQuota(Long.MAX_VALUE));
+                }
+            }
+            Set<String> restartOnly = new TreeSet<>(changed);
+            restartOnly.removeAll(LIVE_KEYS);
+            if (!restartOnly.isEmpty()) {
+                logger.info("Changed settings apply to new providers only: {}", restartOnly);
+            }
+            logger.info("Configuration reloaded, {} settings changed, {} providers reconfigured",
+                    changed.size(), providers.size());
+            return true;
+        }
+    }
+
+    private static void validateLiveSettings(SdkConfig candidate) {
+        try {
+            if (candidate.getCacheCapacity() <= 0 || candidate.getCacheTtlMinutes() <= 0
+                    || candidate.getPollingIntervalMinutes() <= 0 || candidate.getCacheMemoryBudgetMb() < 0) {
+                throw new IllegalArgumentException("cache capacity, TTL and polling interval must be positive");
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid number: " + e.getMessage(), e);
+        }
+    }
+
+    private void scheduleConfigReload() {
+        Path file = config.getExternalFile();
+        long intervalSeconds = config.getConfigReloadIntervalSeconds();
+        if (file == null || intervalSeconds <= 0) {
+            return;
+        }
+        configFileModified = lastModified(file);
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                long modified = lastModified(file);
+                if (modified != configFileModified) {
+                    configFileModified = modified;
+                    reloadConfig();
+                }
+            } catch (Exception e) {
+                logger.error("Error during configuration reload", e);
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        logger.info("Watching {} for configuration changes every {} seconds", file, intervalSeconds);
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+
+    /**
+     * Останавливает провайдеры, к которым не обращались дольше sdk.provider.idle.timeout.minutes.
+     * Освобождённый провайдер удаляется из фабрики и отказывает в обращениях (IllegalStateException);
+     * следующий вызов getWeatherProvider создаст новый.
+     */
+    void reclaimIdleProviders() {
+        long idleTimeoutMillis = config.getProviderIdleTimeoutMinutes() * 60 * 1000;
+        long now = System.currentTimeMillis();
+        List<WeatherProvider> reclaimed = new ArrayList<>();
+
+        // Проверка простоя и удаление идут под блокировкой ключа, как и отметка обращения в getWeatherProvider:
+        // выданный только что провайдер не может быть освобождён
+        for (String providerKey : providers.keySet()) {
+            providers.computeIfPresent(providerKey, (key, provider) -> {
+                if (now - provider.getLastAccessTime() < idleTimeoutMillis) {
+                    return provider;
+                }
+                reclaimed.add(provider);
+                return null;
+            });
+        }
+        for (WeatherProvider provider : reclaimed) {
+            collectHotCities(provider);
+            provider.shutdown();
+            logger.info("Reclaimed idle WeatherProvider for API key: {} (mode: {})",
+                    maskApiKey(provider.getApiKey()), provider.getMode());
+        }
+        if (!reclaimed.isEmpty()) {
+            rebalanceMemoryQuotas();
+        }
+    }
+
+    private void scheduleIdleReclamation() {
+        long idleTimeoutMinutes = config.getProviderIdleTimeoutMinutes();
+        if (idleTimeoutMinutes <= 0) {
+            logger.info("Idle provider reclamation disabled");
+            return;
+        }
+
+        long checkIntervalMinutes = Math.max(1, Math.min(idleTimeoutMinutes, 5));
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                reclaimIdleProviders();
+            } catch (Exception e) {
+                logger.error("Error during idle provider reclamation", e);
+            }
+        }, checkIntervalMinutes, checkIntervalMinutes, TimeUnit.MINUTES);
+        logger.info("Idle provider reclamation enabled, timeout: {} minutes", idleTimeoutMinutes);
+    }
+
+    private static ScheduledExecutorService createScheduler() {
+        AtomicInteger counter = new AtomicInteger();
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(SCHEDULER_THREADS, r -> {
+            Thread thread = new Thread(r, "WeatherSdkScheduler-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Таймеры дедлайна почти всегда отменяются раньше срока и не должны копиться в очереди
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    private static ExecutorService createBlockingExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(BLOCKING_THREADS, r -> {
+            Thread thread = new Thread(r, "WeatherSdkIo-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static String generateProviderKey(String apiKey, OperatingMode mode) {
         return apiKey + "|" + mode.name();
     }
 
+    private static String poolProviderKey(List<String> normalizedKeys, OperatingMode mode) {
+        return generateProviderKey("pool:" + String.join(",", normalizedKeys), mode);
+    }
+
+    /**
+     * Ключ, под которым getWeatherProvider() хранит провайдер по умолчанию; null, если ключ API не задан
+     */
+    private static String defaultProviderKey(SdkConfig config) {
+        OperatingMode mode;
+        try {
+            mode = config.getOperatingMode();
+        } catch (IllegalArgumentException e) {
+            // Неверный режим сообщит об ошибке сам getWeatherProvider()
+            return null;
+        }
+        List<String> apiKeys = config.getApiKeys();
+        if (apiKeys.size() > 1) {
+            return poolProviderKey(apiKeys, mode);
+        }
+        String apiKey = apiKeys.isEmpty() ? config.getApiKey() : apiKeys.get(0);
+        if (apiKey == null || apiKey.trim().isEmpty()) {
+            return null;
+        }
+        return generateProviderKey(apiKey.trim(), mode);
+    }
+
     private String maskApiKey(String apiKey) {
         if (apiKey == null || apiKey.length() <= 8) {
             return "***";
@@ -99,4 +540,4 @@ public class WeatherProviderFactory {
     public int getActiveProvidersCount() {
         return providers.size();
     }
-}
\ No newline at end of file
+}
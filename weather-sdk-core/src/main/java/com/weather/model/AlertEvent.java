@@ -0,0 +1,54 @@
+package com.weather.model;
+
+/**
+ * Срабатывание правила: показатель города пересёк порог
+ */
+public final class AlertEvent {
+    private final long ruleId;
+    private final AlertRule rule;
+    private final String city;
+    private final double previousValue;
+    private final double value;
+    private final Long observedAt;
+
+    public AlertEvent(long ruleId, AlertRule rule, String city, double previousValue, double value, Long observedAt) {
+        this.ruleId = ruleId;
+        this.rule = rule;
+        this.city = city;
+        this.previousValue = previousValue;
+        this.value = value;
+        this.observedAt = observedAt;
+    }
+
+    public long getRuleId() {
+        return ruleId;
+    }
+
+    public AlertRule getRule() {
+        return rule;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    /** Значение до пересечения; NaN, если это первое наблюдение города */
+    public double getPreviousValue() {
+        return previousValue;
+    }
+
+    /** Значение в единицах upstream */
+    public double getValue() {
+        return value;
+    }
+
+    /** Время наблюдения upstream (dt), секунды */
+    public Long getObservedAt() {
+        return observedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "AlertEvent{rule=" + rule + ", city='" + city + "', value=" + value + "}";
+    }
+}
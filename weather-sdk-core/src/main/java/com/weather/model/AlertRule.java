@@ -0,0 +1,85 @@
+package com.weather.model;
+
+import com.weather.config.Units;
+
+import java.util.Locale;
+
+/**
+ * Пороговое правило оповещения: показатель города выше или ниже порога.
+ * Порог хранится в единицах upstream (Кельвины, м/с, метры); city == null - любой город в кэше.
+ */
+public final class AlertRule {
+
+    public enum Condition {
+        ABOVE, BELOW
+    }
+
+    private final String city;
+    private final WeatherMetric metric;
+    private final Condition condition;
+    private final double threshold;
+
+    private AlertRule(String city, WeatherMetric metric, Condition condition, double threshold) {
+        if (metric == null || condition == null) {
+            throw new IllegalArgumentException("Metric and condition are required");
+        }
+        if (!Double.isFinite(threshold)) {
+            throw new IllegalArgumentException("Threshold must be a finite number");
+        }
+        this.city = city == null || city.trim().isEmpty() ? null : city.trim();
+        this.metric = metric;
+        this.condition = condition;
+        this.threshold = threshold;
+    }
+
+    public static AlertRule above(String city, WeatherMetric metric, double threshold, Units units) {
+        return new AlertRule(city, metric, Condition.ABOVE, toStandard(metric, threshold, units));
+    }
+
+    public static AlertRule below(String city, WeatherMetric metric, double threshold, Units units) {
+        return new AlertRule(city, metric, Condition.BELOW, toStandard(metric, threshold, units));
+    }
+
+    private static double toStandard(WeatherMetric metric, double threshold, Units units) {
+        Units source = units != null ? units : Units.STANDARD;
+        if (metric == null) {
+            return threshold;
+        }
+        return switch (metric) {
+            case TEMP, FEELS_LIKE -> source.toKelvin(threshold);
+            case WIND_SPEED -> source.toMetersPerSecond(threshold);
+            case VISIBILITY -> threshold;
+        };
+    }
+
+    /** Город правила; null - правило для любого города */
+    public String getCity() {
+        return city;
+    }
+
+    public WeatherMetric getMetric() {
+        return metric;
+    }
+
+    public Condition getCondition() {
+        return condition;
+    }
+
+    /** Порог в единицах upstream */
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Выполняется ли условие для значения показателя
+     */
+    public boolean matches(double value) {
+        return condition == Condition.ABOVE ? value > threshold : value < threshold;
+    }
+
+    @Override
+    public String toString() {
+        return (city != null ? city : "*") + " " + metric + " "
+                + condition.name().toLowerCase(Locale.ROOT) + " " + threshold;
+    }
+}
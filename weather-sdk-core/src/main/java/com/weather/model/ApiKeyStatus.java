@@ -0,0 +1,40 @@
+package com.weather.model;
+
+/**
+ * Состояние ключа API в пуле на момент запроса
+ */
+public final class ApiKeyStatus {
+    private final String maskedKey;
+    private final int callsInWindow;
+    private final int remainingCalls;
+    private final long quarantineRemainingMillis;
+
+    public ApiKeyStatus(String maskedKey, int callsInWindow, int remainingCalls, long quarantineRemainingMillis) {
+        this.maskedKey = maskedKey;
+        this.callsInWindow = callsInWindow;
+        this.remainingCalls = remainingCalls;
+        this.quarantineRemainingMillis = quarantineRemainingMillis;
+    }
+
+    public String getMaskedKey() {
+        return maskedKey;
+    }
+
+    /** Запросов в текущем минутном окне */
+    public int getCallsInWindow() {
+        return callsInWindow;
+    }
+
+    /** Остаток бюджета ключа в текущем окне */
+    public int getRemainingCalls() {
+        return remainingCalls;
+    }
+
+    public boolean isQuarantined() {
+        return quarantineRemainingMillis > 0;
+    }
+
+    public long getQuarantineRemainingMillis() {
+        return quarantineRemainingMillis;
+    }
+}
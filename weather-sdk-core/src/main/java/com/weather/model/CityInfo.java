@@ -0,0 +1,53 @@
+package com.weather.model;
+
+/**
+ * Город из каталога OpenWeatherMap: идентификатор, название и координаты
+ */
+public final class CityInfo {
+    private final long id;
+    private final String name;
+    private final String state;
+    private final String country;
+    private final double lat;
+    private final double lon;
+
+    public CityInfo(long id, String name, String state, String country, double lat, double lon) {
+        this.id = id;
+        this.name = name;
+        this.state = state;
+        this.country = country;
+        this.lat = lat;
+        this.lon = lon;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Код штата (только для США), иначе пустая строка */
+    public String getState() {
+        return state;
+    }
+
+    /** Код страны ISO 3166 */
+    public String getCountry() {
+        return country;
+    }
+
+    public double getLat() {
+        return lat;
+    }
+
+    public double getLon() {
+        return lon;
+    }
+
+    @Override
+    public String toString() {
+        return "CityInfo{id=" + id + ", name='" + name + "', country='" + country + "'}";
+    }
+}
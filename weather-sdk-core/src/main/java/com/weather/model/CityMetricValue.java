@@ -0,0 +1,36 @@
+package com.weather.model;
+
+/**
+ * Значение показателя для одного города из кэша, строка результата запроса top-K
+ */
+public final class CityMetricValue {
+    private final String city;
+    private final String name;
+    private final String country;
+    private final double value;
+
+    public CityMetricValue(String city, String name, String country, double value) {
+        this.city = city;
+        this.name = name;
+        this.country = country;
+        this.value = value;
+    }
+
+    /** Ключ города в кэше, как его запрашивали */
+    public String getCity() {
+        return city;
+    }
+
+    /** Название города в ответе upstream */
+    public String getName() {
+        return name;
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    public double getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,151 @@
+package com.weather.model;
+
+import java.util.Arrays;
+
+/**
+ * Прогноз на 5 дней с шагом 3 часа в колоночном виде: по примитивному массиву на показатель.
+ * <p>
+ * Точки отсортированы по времени. Запросы диапазона решаются бинарным поиском и чтением по индексу,
+ * без создания объектов: ближайшие 24 часа - это [indexFrom(now), indexFrom(now + 86400)).
+ * Экземпляр неизменяемый.
+ */
+public final class ForecastData {
+    /** Значение видимости, если upstream её не прислал */
+    public static final int UNKNOWN_VISIBILITY = -1;
+
+    private final String name;
+    private final String country;
+    private final Integer timezone;
+    private final long[] timestamps;
+    private final double[] temps;
+    private final double[] windSpeeds;
+    private final int[] visibilities;
+    private final long timestamp; // Внутреннее поле для кэширования
+
+    public ForecastData(String name, String country, Integer timezone, long[] timestamps,
+                        double[] temps, double[] windSpeeds, int[] visibilities) {
+        this(name, country, timezone, timestamps, temps, windSpeeds, visibilities, System.currentTimeMillis());
+    }
+
+    /**
+     * @param timestamp время получения прогноза по часам SDK, от него считается срок в кэше
+     */
+    public ForecastData(String name, String country, Integer timezone, long[] timestamps,
+                        double[] temps, double[] windSpeeds, int[] visibilities, long timestamp) {
+        int size = timestamps.length;
+        if (temps.length != size || windSpeeds.length != size || visibilities.length != size) {
+            throw new IllegalArgumentException("Forecast columns must have the same length");
+        }
+        this.name = name;
+        this.country = country;
+        this.timezone = timezone;
+        this.timestamps = timestamps;
+        this.temps = temps;
+        this.windSpeeds = windSpeeds;
+        this.visibilities = visibilities;
+        this.timestamp = timestamp;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    public Integer getTimezone() {
+        return timezone;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int size() {
+        return timestamps.length;
+    }
+
+    /** Время точки прогноза, секунды Unix */
+    public long getDatetime(int index) {
+        return timestamps[index];
+    }
+
+    public double getTemp(int index) {
+        return temps[index];
+    }
+
+    public double getWindSpeed(int index) {
+        return windSpeeds[index];
+    }
+
+    public int getVisibility(int index) {
+        return visibilities[index];
+    }
+
+    /**
+     * Индекс первой точки с временем не раньше epochSeconds; size(), если таких нет
+     */
+    public int indexFrom(long epochSeconds) {
+        int index = Arrays.binarySearch(timestamps, epochSeconds);
+        if (index < 0) {
+            return -index - 1;
+        }
+        while (index > 0 && timestamps[index - 1] == epochSeconds) {
+            index--;
+        }
+        return index;
+    }
+
+    public double minTemp(int fromIndex, int toIndex) {
+        double min = Double.NaN;
+        for (int i = fromIndex; i < toIndex; i++) {
+            if (Double.isNaN(min) || temps[i] < min) {
+                min = temps[i];
+            }
+        }
+        return min;
+    }
+
+    public double maxTemp(int fromIndex, int toIndex) {
+        double max = Double.NaN;
+        for (int i = fromIndex; i < toIndex; i++) {
+            if (Double.isNaN(max) || temps[i] > max) {
+                max = temps[i];
+            }
+        }
+        return max;
+    }
+
+    public double averageTemp(int fromIndex, int toIndex) {
+        if (toIndex <= fromIndex) {
+            return Double.NaN;
+        }
+        double sum = 0;
+        for (int i = fromIndex; i < toIndex; i++) {
+            sum += temps[i];
+        }
+        return sum / (toIndex - fromIndex);
+    }
+
+    public double maxWindSpeed(int fromIndex, int toIndex) {
+        double max = Double.NaN;
+        for (int i = fromIndex; i < toIndex; i++) {
+            if (Double.isNaN(max) || windSpeeds[i] > max) {
+                max = windSpeeds[i];
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "ForecastData{" +
+                "name='" + name + '\'' +
+                ", country='" + country + '\'' +
+                ", timezone=" + timezone +
+                ", points=" + timestamps.length +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
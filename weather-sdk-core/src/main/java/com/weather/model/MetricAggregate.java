@@ -0,0 +1,42 @@
+package com.weather.model;
+
+/**
+ * Сводка показателя по группе городов из кэша: по всем или по одной стране
+ */
+public final class MetricAggregate {
+    private final String group;
+    private final int count;
+    private final double min;
+    private final double max;
+    private final double average;
+
+    public MetricAggregate(String group, int count, double min, double max, double average) {
+        this.group = group;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.average = average;
+    }
+
+    /** Код страны группы; null - все города */
+    public String getGroup() {
+        return group;
+    }
+
+    /** Число городов, у которых показатель известен */
+    public int getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getAverage() {
+        return average;
+    }
+}
@@ -0,0 +1,60 @@
+package com.weather.model;
+
+/**
+ * Сводка по показателю за окно истории наблюдений
+ */
+public final class ObservationStats {
+    private final WeatherMetric metric;
+    private final int count;
+    private final double min;
+    private final double max;
+    private final double average;
+    private final double delta;
+
+    public ObservationStats(WeatherMetric metric, int count, double min, double max, double average, double delta) {
+        this.metric = metric;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.average = average;
+        this.delta = delta;
+    }
+
+    public WeatherMetric getMetric() {
+        return metric;
+    }
+
+    /** Число наблюдений в окне */
+    public int getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getAverage() {
+        return average;
+    }
+
+    /** Изменение показателя: последнее значение в окне минус первое */
+    public double getDelta() {
+        return delta;
+    }
+
+    @Override
+    public String toString() {
+        return "ObservationStats{" +
+                "metric=" + metric +
+                ", count=" + count +
+                ", min=" + min +
+                ", max=" + max +
+                ", average=" + average +
+                ", delta=" + delta +
+                '}';
+    }
+}
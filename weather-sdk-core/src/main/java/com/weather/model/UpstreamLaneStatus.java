@@ -0,0 +1,62 @@
+package com.weather.model;
+
+/**
+ * Счётчики полосы приоритета диспетчера запросов к API на момент запроса
+ */
+public final class UpstreamLaneStatus {
+    private final String lane;
+    private final int inFlight;
+    private final int queued;
+    private final long started;
+    private final long completed;
+    private final long failed;
+    private final double averageWaitMillis;
+    private final double maxWaitMillis;
+
+    public UpstreamLaneStatus(String lane, int inFlight, int queued, long started, long completed, long failed,
+                              double averageWaitMillis, double maxWaitMillis) {
+        this.lane = lane;
+        this.inFlight = inFlight;
+        this.queued = queued;
+        this.started = started;
+        this.completed = completed;
+        this.failed = failed;
+        this.averageWaitMillis = averageWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public String getLane() {
+        return lane;
+    }
+
+    /** Запросов к API, выполняемых сейчас */
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /** Запросов, ожидающих свободного места */
+    public int getQueued() {
+        return queued;
+    }
+
+    public long getStarted() {
+        return started;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    /** Среднее ожидание в очереди до начала запроса */
+    public double getAverageWaitMillis() {
+        return averageWaitMillis;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+}
@@ -125,6 +125,13 @@ public class WeatherData {
         return null;
     }
 
+    public Integer getWeatherId() {
+        if (weather != null && !weather.isEmpty()) {
+            return weather.get(0).getId();
+        }
+        return null;
+    }
+
     public String getWeatherDescription() {
         if (weather != null && !weather.isEmpty()) {
             return weather.get(0).getDescription();
@@ -152,9 +159,17 @@ public class WeatherData {
         return sys != null ? sys.getSunset() : null;
     }
 
+    /** Код страны ISO 3166 из sys.country */
+    public String getCountry() {
+        return sys != null ? sys.getCountry() : null;
+    }
+
     // Вложенные классы для структуры JSON
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static class Weather {
+        @JsonProperty("id")
+        private Integer id;
+
         @JsonProperty("main")
         private String main;
 
@@ -162,6 +177,15 @@ public class WeatherData {
         private String description;
 
         // Геттеры и сеттеры
+        /** Код погодного условия OpenWeatherMap, ключ для локализованных описаний */
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+
         public String getMain() {
             return main;
         }
@@ -180,7 +204,7 @@ public class WeatherData {
 
         @Override
         public String toString() {
-            return "Weather{main='" + main + "', description='" + description + "'}";
+            return "Weather{id=" + id + ", main='" + main + "', description='" + description + "'}";
         }
     }
 
@@ -243,6 +267,9 @@ public class WeatherData {
         @JsonProperty("sunset")
         private Long sunset;
 
+        @JsonProperty("country")
+        private String country;
+
         // Геттеры и сеттеры
         public Long getSunrise() {
             return sunrise;
@@ -260,12 +287,39 @@ public class WeatherData {
             this.sunset = sunset;
         }
 
+        public String getCountry() {
+            return country;
+        }
+
+        public void setCountry(String country) {
+            this.country = country;
+        }
+
         @Override
         public String toString() {
-            return "Sys{sunrise=" + sunrise + ", sunset=" + sunset + "}";
+            return "Sys{sunrise=" + sunrise + ", sunset=" + sunset + ", country='" + country + "'}";
         }
     }
 
+    /**
+     * То же наблюдение upstream: совпадают dt и все значения, время загрузки не учитывается
+     */
+    public boolean isSameObservation(WeatherData other) {
+        return other != null &&
+                Objects.equals(datetime, other.datetime) &&
+                Objects.equals(getWeatherId(), other.getWeatherId()) &&
+                Objects.equals(getWeatherMain(), other.getWeatherMain()) &&
+                Objects.equals(getWeatherDescription(), other.getWeatherDescription()) &&
+                Objects.equals(getTemp(), other.getTemp()) &&
+                Objects.equals(getFeelsLike(), other.getFeelsLike()) &&
+                Objects.equals(getWindSpeed(), other.getWindSpeed()) &&
+                Objects.equals(visibility, other.visibility) &&
+                Objects.equals(getSunrise(), other.getSunrise()) &&
+                Objects.equals(getSunset(), other.getSunset()) &&
+                Objects.equals(timezone, other.timezone) &&
+                Objects.equals(name, other.name);
+    }
+
     // equals, hashCode, toString
     @Override
     public boolean equals(Object o) {
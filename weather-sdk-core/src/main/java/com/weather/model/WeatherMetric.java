@@ -0,0 +1,40 @@
+package com.weather.model;
+
+import com.weather.config.Units;
+
+/**
+ * Числовые показатели наблюдения, по которым строятся история и запросы
+ */
+public enum WeatherMetric {
+    TEMP,
+    FEELS_LIKE,
+    WIND_SPEED,
+    VISIBILITY;
+
+    /**
+     * Значение показателя из наблюдения; NaN, если upstream его не прислал
+     */
+    public double extract(WeatherData data) {
+        Number value = switch (this) {
+            case TEMP -> data.getTemp();
+            case FEELS_LIKE -> data.getFeelsLike();
+            case WIND_SPEED -> data.getWindSpeed();
+            case VISIBILITY -> data.getVisibility();
+        };
+        return value != null ? value.doubleValue() : Double.NaN;
+    }
+
+    /**
+     * Переводит значение показателя из единиц upstream в заданную систему единиц
+     */
+    public double convert(double value, Units units) {
+        if (Double.isNaN(value) || units == null) {
+            return value;
+        }
+        return switch (this) {
+            case TEMP, FEELS_LIKE -> units.convertTemperature(value);
+            case WIND_SPEED -> units.convertSpeed(value);
+            case VISIBILITY -> value;
+        };
+    }
+}
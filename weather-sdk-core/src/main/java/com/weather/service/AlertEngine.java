@@ -0,0 +1,333 @@
+package com.weather.service;
+
+import com.weather.model.AlertEvent;
+import com.weather.model.AlertRule;
+import com.weather.model.WeatherData;
+import com.weather.model.WeatherMetric;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Пороговые оповещения, проверяемые инкрементально при обновлении города.
+ * <p>
+ * Правила индексируются по городу (или "любой город") и показателю в отсортированных по порогу картах,
+ * отдельно для условий "выше" и "ниже". Для каждого города хранятся последние значения показателей.
+ * При новом наблюдении условие правила могло стать истинным, только если его порог лежит между старым
+ * и новым значением, поэтому проверяется лишь этот диапазон карты, а не все правила.
+ * <p>
+ * Срабатывание по фронту: правило оповещает при переходе условия из ложного в истинное и молчит,
+ * пока оно остаётся истинным. Первое наблюдение города считается переходом из неизвестного состояния;
+ * новое правило срабатывает на следующем пересечении. События доставляются через executor
+ * по одному, в порядке срабатывания.
+ */
+public final class AlertEngine {
+    private static final Logger logger = LoggerFactory.getLogger(AlertEngine.class);
+    private static final WeatherMetric[] METRICS = WeatherMetric.values();
+
+    private final Executor executor;
+    private final ReentrantReadWriteLock lock;
+    private final Map<String, ThresholdIndex[]> cityRules;
+    private final ThresholdIndex[] anyCityRules;
+    private final Map<Long, Registration> registrations;
+    private final ConcurrentHashMap<String, double[]> lastValues;
+    private final AtomicLong nextRuleId;
+    private final AtomicLong firedCount;
+    private final ConcurrentLinkedQueue<Runnable> pending;
+    private final AtomicBoolean delivering;
+
+    public AlertEngine(Executor executor) {
+        this.executor = executor;
+        this.lock = new ReentrantReadWriteLock();
+        this.cityRules = new HashMap<>();
+        this.anyCityRules = newIndexes();
+        this.registrations = new HashMap<>();
+        this.lastValues = new ConcurrentHashMap<>();
+        this.nextRuleId = new AtomicLong();
+        this.firedCount = new AtomicLong();
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.delivering = new AtomicBoolean();
+    }
+
+    /**
+     * Регистрирует правило
+     *
+     * @return идентификатор правила для removeRule
+     */
+    public long addRule(AlertRule rule, AlertListener listener) {
+        if (rule == null || listener == null) {
+            throw new IllegalArgumentException("Rule and listener are required");
+        }
+        Registration registration = new Registration(nextRuleId.incrementAndGet(), rule, listener);
+        lock.writeLock().lock();
+        try {
+            registrations.put(registration.id, registration);
+            indexes(rule.getCity(), true)[rule.getMetric().ordinal()].add(registration);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.debug("Alert rule {} registered: {}", registration.id, rule);
+        return registration.id;
+    }
+
+    /**
+     * Удаляет правило; события, ещё не доставленные, отбрасываются
+     *
+     * @return false, если правила с таким идентификатором нет
+     */
+    public boolean removeRule(long ruleId) {
+        lock.writeLock().lock();
+        try {
+            Registration registration = registrations.remove(ruleId);
+            if (registration == null) {
+                return false;
+            }
+            registration.active = false;
+            AlertRule rule = registration.rule;
+            ThresholdIndex[] indexes = indexes(rule.getCity(), false);
+            indexes[rule.getMetric().ordinal()].remove(registration);
+            if (rule.getCity() != null && Arrays.stream(indexes).allMatch(ThresholdIndex::isEmpty)) {
+                cityRules.remove(key(rule.getCity()));
+            }
+            if (registrations.isEmpty()) {
+                lastValues.clear();
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Проверяет новое наблюдение города. Показатель, которого нет в наблюдении, сохраняет прежнее значение.
+     */
+    public void evaluate(String city, WeatherData data) {
+        if (city == null || data == null) {
+            return;
+        }
+        // Без правил последние значения не нужны: правило, добавленное позже, начинает с первого наблюдения
+        lock.readLock().lock();
+        try {
+            if (registrations.isEmpty()) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        String key = key(city);
+        double[] observed = new double[METRICS.length];
+        for (WeatherMetric metric : METRICS) {
+            observed[metric.ordinal()] = metric.extract(data);
+        }
+        double[][] previousHolder = new double[1][];
+        double[] current = lastValues.compute(key, (k, previous) -> {
+            previousHolder[0] = previous;
+            if (previous != null) {
+                for (int i = 0; i < observed.length; i++) {
+                    if (Double.isNaN(observed[i])) {
+                        observed[i] = previous[i];
+                    }
+                }
+            }
+            return observed;
+        });
+        double[] previous = previousHolder[0];
+        if (previous != null && Arrays.equals(previous, current)) {
+            return;
+        }
+
+        List<Registration> triggered = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (registrations.isEmpty()) {
+                return;
+            }
+            ThresholdIndex[] own = cityRules.get(key);
+            for (WeatherMetric metric : METRICS) {
+                int i = metric.ordinal();
+                double from = previous != null ? previous[i] : Double.NaN;
+                double to = current[i];
+                if (Double.isNaN(to) || from == to) {
+                    continue;
+                }
+                anyCityRules[i].collectTriggered(from, to, triggered);
+                if (own != null) {
+                    own[i].collectTriggered(from, to, triggered);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        for (Registration registration : triggered) {
+            int i = registration.rule.getMetric().ordinal();
+            double from = previous != null ? previous[i] : Double.NaN;
+            deliver(registration, new AlertEvent(registration.id, registration.rule, city, from, current[i],
+                    data.getDatetime()));
+        }
+    }
+
+    /**
+     * Забывает последние значения города, например после его удаления из кэша
+     */
+    public void forget(String city) {
+        if (city != null) {
+            lastValues.remove(key(city));
+        }
+    }
+
+    public int getRuleCount() {
+        lock.readLock().lock();
+        try {
+            return registrations.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Для скольких городов хранятся последние значения */
+    int getTrackedCityCount() {
+        return lastValues.size();
+    }
+
+    /** Сколько событий отправлено получателям */
+    public long getFiredCount() {
+        return firedCount.get();
+    }
+
+    private void deliver(Registration registration, AlertEvent event) {
+        pending.add(() -> {
+            if (registration.active) {
+                firedCount.incrementAndGet();
+                registration.listener.onAlert(event);
+            }
+        });
+        scheduleDelivery();
+    }
+
+    private void scheduleDelivery() {
+        if (pending.isEmpty() || !delivering.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            delivering.set(false);
+            logger.warn("Alert delivery rejected, {} events pending: {}", pending.size(), e.getMessage());
+        }
+    }
+
+    // Один доставщик за раз сохраняет порядок событий
+    private void drain() {
+        try {
+            Runnable task;
+            while ((task = pending.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    logger.warn("Alert listener failed: {}", e.getMessage(), e);
+                }
+            }
+        } finally {
+            delivering.set(false);
+        }
+        scheduleDelivery();
+    }
+
+    private ThresholdIndex[] indexes(String city, boolean create) {
+        if (city == null) {
+            return anyCityRules;
+        }
+        return create ? cityRules.computeIfAbsent(key(city), k -> newIndexes()) : cityRules.get(key(city));
+    }
+
+    private static ThresholdIndex[] newIndexes() {
+        ThresholdIndex[] indexes = new ThresholdIndex[METRICS.length];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = new ThresholdIndex();
+        }
+        return indexes;
+    }
+
+    private static String key(String city) {
+        return city.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Правила одного показателя, отсортированные по порогу
+     */
+    private static final class ThresholdIndex {
+        final TreeMap<Double, List<Registration>> above = new TreeMap<>();
+        final TreeMap<Double, List<Registration>> below = new TreeMap<>();
+
+        void add(Registration registration) {
+            map(registration).computeIfAbsent(registration.rule.getThreshold(), t -> new ArrayList<>(1))
+                    .add(registration);
+        }
+
+        void remove(Registration registration) {
+            TreeMap<Double, List<Registration>> map = map(registration);
+            List<Registration> list = map.get(registration.rule.getThreshold());
+            if (list != null && list.remove(registration) && list.isEmpty()) {
+                map.remove(registration.rule.getThreshold());
+            }
+        }
+
+        boolean isEmpty() {
+            return above.isEmpty() && below.isEmpty();
+        }
+
+        /**
+         * Правила, условие которых стало истинным при переходе значения from -> to; from == NaN - первое наблюдение.
+         * "Выше t" становится истинным при from <= t < to, "ниже t" - при to < t <= from.
+         */
+        void collectTriggered(double from, double to, List<Registration> out) {
+            if (Double.isNaN(from)) {
+                addAll(above.headMap(to, false), out);
+                addAll(below.tailMap(to, false), out);
+            } else if (to > from) {
+                addAll(above.subMap(from, true, to, false), out);
+            } else {
+                addAll(below.subMap(to, false, from, true), out);
+            }
+        }
+
+        private TreeMap<Double, List<Registration>> map(Registration registration) {
+            return registration.rule.getCondition() == AlertRule.Condition.ABOVE ? above : below;
+        }
+
+        private static void addAll(NavigableMap<Double, List<Registration>> range, List<Registration> out) {
+            for (List<Registration> list : range.values()) {
+                out.addAll(list);
+            }
+        }
+    }
+
+    private static final class Registration {
+        final long id;
+        final AlertRule rule;
+        final AlertListener listener;
+        volatile boolean active = true;
+
+        Registration(long id, AlertRule rule, AlertListener listener) {
+            this.id = id;
+            this.rule = rule;
+            this.listener = listener;
+        }
+    }
+}
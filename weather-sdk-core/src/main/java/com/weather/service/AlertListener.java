@@ -0,0 +1,13 @@
+package com.weather.service;
+
+import com.weather.model.AlertEvent;
+
+/**
+ * Получатель срабатываний правила оповещения. Вызывается асинхронно, по одному событию за раз
+ * в порядке срабатывания; исключения обработчика логируются и не мешают остальным.
+ */
+@FunctionalInterface
+public interface AlertListener {
+
+    void onAlert(AlertEvent event);
+}
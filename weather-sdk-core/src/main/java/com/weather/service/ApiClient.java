@@ -1,96 +1,271 @@
 package com.weather.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.weather.exception.*;
+import com.weather.model.ApiKeyStatus;
+import com.weather.model.ForecastData;
 import com.weather.model.WeatherData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URI;
-import java.net.URL;
 import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.nio.charset.StandardCharsets;
-import java.util.Scanner;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 /**
  * Клиент для работы с OpenWeatherMap API
  */
 public class ApiClient {
     private static final Logger logger = LoggerFactory.getLogger(ApiClient.class);
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    // Ответы разбираются потоково, без ObjectMapper и рефлексии
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(15);
 
     private final String apiKey;
     private final String baseUrl;
+    private final HttpClient httpClient;
 
     public ApiClient(String apiKey, String baseUrl) {
+        this(apiKey, baseUrl, createHttpClient());
+    }
+
+    /**
+     * Клиент поверх общего HttpClient: соединения переиспользуются всеми провайдерами
+     */
+    public ApiClient(String apiKey, String baseUrl, HttpClient httpClient) {
         this.apiKey = apiKey;
         this.baseUrl = baseUrl;
+        this.httpClient = httpClient;
         logger.info("ApiClient initialized with base URL: {}", baseUrl);
     }
 
+    public static HttpClient createHttpClient() {
+        return createHttpClient(null);
+    }
+
+    /**
+     * @param executor исполнитель для асинхронных задач клиента; null - исполнитель по умолчанию
+     */
+    public static HttpClient createHttpClient(Executor executor) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL);
+        if (executor != null) {
+            builder.executor(executor);
+        }
+        return builder.build();
+    }
+
     /**
      * Получает данные о погоде для указанного города
      */
     public WeatherData getWeatherData(String cityName) {
         logger.debug("Fetching weather data for city: {}", cityName);
 
-        HttpURLConnection connection = null;
         try {
-            String encodedCity = URLEncoder.encode(cityName, StandardCharsets.UTF_8.toString());
-            String urlString = String.format("%s/weather?q=%s&appid=%s", baseUrl, encodedCity, apiKey);
-
-            logger.debug("Making API request to: {}", urlString.replace(apiKey, "***"));
-
-            URL url = URI.create(urlString).toURL();
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(10000); // 10 seconds
-            connection.setReadTimeout(15000); // 15 seconds
-            connection.setRequestProperty("User-Agent", "WeatherSDK/1.0");
-
-            int responseCode = connection.getResponseCode();
-            logger.debug("API response code: {}", responseCode);
-
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                String responseBody = readResponse(connection);
-                logger.debug("API response body: {}", responseBody);
-
-                WeatherData weatherData = objectMapper.readValue(responseBody, WeatherData.class);
-                logger.info("Successfully fetched weather data for: {}", cityName);
-                return weatherData;
-            } else {
-                handleErrorResponse(responseCode, cityName, connection);
-                return null; // Этот код никогда не выполнится из-за исключений
-            }
-
+            String responseBody = request("weather", cityName);
+            WeatherData weatherData = WeatherDataDecoder.decode(jsonFactory, responseBody);
+            logger.info("Successfully fetched weather data for: {}", cityName);
+            return weatherData;
         } catch (WeatherSDKException e) {
             logger.error("Weather SDK error for city {}: {}", cityName, e.getMessage());
             throw e;
         } catch (Exception e) {
             logger.error("Unexpected error fetching weather data for city {}: {}", cityName, e.getMessage(), e);
             throw new WeatherSDKException("Failed to fetch weather data for city: " + cityName, e);
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
         }
     }
 
-    private String readResponse(HttpURLConnection connection) {
+    /**
+     * Погода по идентификатору города OpenWeatherMap: без неоднозначности одноимённых городов
+     */
+    public WeatherData getWeatherDataById(long cityId) {
+        logger.debug("Fetching weather data for city id: {}", cityId);
+
+        String cityLabel = "id " + cityId;
+        try {
+            String responseBody = request("weather", "id=" + cityId, cityLabel);
+            WeatherData weatherData = WeatherDataDecoder.decode(jsonFactory, responseBody);
+            logger.info("Successfully fetched weather data for city id: {}", cityId);
+            return weatherData;
+        } catch (WeatherSDKException e) {
+            logger.error("Weather SDK error for city id {}: {}", cityId, e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            logger.error("Unexpected error fetching weather data for city id {}: {}", cityId, e.getMessage(), e);
+            throw new WeatherSDKException("Failed to fetch weather data for city: " + cityLabel, e);
+        }
+    }
+
+    /**
+     * Асинхронный запрос погоды с ограничением времени на весь обмен. Отмена возвращённого
+     * future отменяет HTTP-запрос. Ошибки приходят как WeatherSDKException и её наследники.
+     */
+    public CompletableFuture<WeatherData> getWeatherDataAsync(String cityName, Duration timeout) {
+        logger.debug("Fetching weather data for city: {} within {} ms", cityName, timeout.toMillis());
+        return requestWeatherAsync(cityQuery(cityName), cityName, timeout);
+    }
+
+    /**
+     * Асинхронный запрос погоды по идентификатору города с ограничением времени на весь обмен
+     */
+    public CompletableFuture<WeatherData> getWeatherDataByIdAsync(long cityId, Duration timeout) {
+        logger.debug("Fetching weather data for city id: {} within {} ms", cityId, timeout.toMillis());
+        return requestWeatherAsync("id=" + cityId, "id " + cityId, timeout);
+    }
+
+    /**
+     * @param query     параметр выбора города: q={название} или id={идентификатор}
+     * @param cityName  как город называется в логах и исключениях
+     */
+    private CompletableFuture<WeatherData> requestWeatherAsync(String query, String cityName, Duration timeout) {
+        Duration exchangeTimeout = timeout.compareTo(READ_TIMEOUT) < 0 ? timeout : READ_TIMEOUT;
+        if (exchangeTimeout.toMillis() < 1) {
+            exchangeTimeout = Duration.ofMillis(1);
+        }
+        HttpRequest request = buildRequest("weather", query, exchangeTimeout);
+        CompletableFuture<HttpResponse<String>> exchange =
+                httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        CompletableFuture<WeatherData> result = exchange.handle((response, error) -> {
+            if (error != null) {
+                throw toSdkException(error, "weather", cityName);
+            }
+            try {
+                return WeatherDataDecoder.decode(jsonFactory, checkResponse(response, cityName));
+            } catch (IOException e) {
+                throw new WeatherSDKException("Failed to fetch weather data for city: " + cityName, e);
+            }
+        });
+        // Отмена зависимого этапа сама до HTTP-обмена не доходит
+        result.whenComplete((data, error) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Получает прогноз на 5 дней с шагом 3 часа для указанного города
+     */
+    public ForecastData getForecastData(String cityName) {
+        return getForecastData(cityName, CoarseClock.system());
+    }
+
+    /**
+     * Прогноз с отметкой времени получения по заданным часам, например по часам кэша провайдера
+     */
+    public ForecastData getForecastData(String cityName, CoarseClock clock) {
+        logger.debug("Fetching forecast for city: {}", cityName);
+
         try {
-            Scanner scanner = new Scanner(connection.getInputStream(), StandardCharsets.UTF_8);
-            scanner.useDelimiter("\\A");
-            return scanner.hasNext() ? scanner.next() : "";
+            String responseBody = request("forecast", cityName);
+            ForecastData forecast = ForecastDecoder.decode(jsonFactory, responseBody, clock.currentTimeMillis());
+            logger.info("Successfully fetched forecast for: {} ({} points)", cityName, forecast.size());
+            return forecast;
+        } catch (WeatherSDKException e) {
+            logger.error("Weather SDK error for forecast of city {}: {}", cityName, e.getMessage());
+            throw e;
         } catch (Exception e) {
-            // Если не удалось прочитать успешный ответ, пробуем прочитать ошибку
-            String errorResponse = readErrorResponse(connection);
-            throw new WeatherSDKException("Failed to read API response: " + errorResponse, e);
+            logger.error("Unexpected error fetching forecast for city {}: {}", cityName, e.getMessage(), e);
+            throw new WeatherSDKException("Failed to fetch forecast for city: " + cityName, e);
+        }
+    }
+
+    /**
+     * Состояние ключей пула; клиент с одним ключом бюджет не отслеживает
+     */
+    public List<ApiKeyStatus> getKeyStatus() {
+        return List.of();
+    }
+
+    /**
+     * Выполняет GET {baseUrl}/{endpoint}?q={city} и возвращает тело успешного ответа
+     */
+    private String request(String endpoint, String cityName) throws IOException {
+        return request(endpoint, cityQuery(cityName), cityName);
+    }
+
+    /**
+     * @param query     параметр выбора города: q={название} или id={идентификатор}
+     * @param cityName  как город называется в логах и исключениях
+     */
+    private String request(String endpoint, String query, String cityName) throws IOException {
+        HttpRequest request = buildRequest(endpoint, query, READ_TIMEOUT);
+
+        HttpResponse<String> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (HttpTimeoutException e) {
+            logger.error("Timeout calling {} for city {}: {}", endpoint, cityName, e.getMessage());
+            throw new WeatherSDKException("Timeout fetching " + endpoint + " data for city: " + cityName, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WeatherSDKException("Interrupted while fetching " + endpoint + " data for city: " + cityName, e);
+        }
+
+        return checkResponse(response, cityName);
+    }
+
+    private static String cityQuery(String cityName) {
+        return "q=" + URLEncoder.encode(cityName, StandardCharsets.UTF_8);
+    }
+
+    private HttpRequest buildRequest(String endpoint, String query, Duration timeout) {
+        String urlString = String.format("%s/%s?%s&appid=%s", baseUrl, endpoint, query, apiKey);
+
+        logger.debug("Making API request to: {}", urlString.replace(apiKey, "***"));
+
+        return HttpRequest.newBuilder(URI.create(urlString))
+                .timeout(timeout)
+                .header("User-Agent", "WeatherSDK/1.0")
+                .GET()
+                .build();
+    }
+
+    /**
+     * Тело успешного ответа; для остальных кодов - исключение по коду
+     */
+    private String checkResponse(HttpResponse<String> response, String cityName) {
+        int responseCode = response.statusCode();
+        logger.debug("API response code: {}", responseCode);
+
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            handleErrorResponse(responseCode, cityName, response.body());
         }
+        logger.debug("API response body: {}", response.body());
+        return response.body();
     }
 
-    private void handleErrorResponse(int responseCode, String cityName, HttpURLConnection connection) {
-        String errorMessage = readErrorResponse(connection);
+    private static RuntimeException toSdkException(Throwable error, String endpoint, String cityName) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof WeatherSDKException sdkException) {
+            return sdkException;
+        }
+        if (cause instanceof HttpTimeoutException) {
+            logger.error("Timeout calling {} for city {}: {}", endpoint, cityName, cause.getMessage());
+            return new WeatherSDKException("Timeout fetching " + endpoint + " data for city: " + cityName, cause);
+        }
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        return new WeatherSDKException("Failed to fetch " + endpoint + " data for city: " + cityName, cause);
+    }
+
+    private void handleErrorResponse(int responseCode, String cityName, String errorBody) {
+        String errorMessage = errorBody == null || errorBody.isEmpty() ? "Unknown error (empty body)" : errorBody;
         logger.error("API error for city {}: HTTP {} - {}", cityName, responseCode, errorMessage);
 
         switch (responseCode) {
@@ -108,17 +283,4 @@ public class ApiClient {
                 throw new WeatherSDKException("API error: HTTP " + responseCode + " for city: " + cityName);
         }
     }
-
-    private String readErrorResponse(HttpURLConnection connection) {
-        try {
-            if (connection.getErrorStream() != null) {
-                Scanner scanner = new Scanner(connection.getErrorStream(), StandardCharsets.UTF_8);
-                scanner.useDelimiter("\\A");
-                return scanner.hasNext() ? scanner.next() : "Unknown error (no error stream)";
-            }
-            return "Unknown error (no error stream available)";
-        } catch (Exception e) {
-            return "Failed to read error response: " + e.getMessage();
-        }
-    }
 }
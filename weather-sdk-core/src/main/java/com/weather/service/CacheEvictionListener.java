@@ -0,0 +1,22 @@
+package com.weather.service;
+
+import com.weather.model.WeatherData;
+
+/**
+ * Уведомление об удалении города из кэша. Вызывается вне блокировки кэша,
+ * поэтому обработчик может обращаться к кэшу; исключения обработчика логируются и не мешают остальным.
+ */
+@FunctionalInterface
+public interface CacheEvictionListener {
+
+    enum Cause {
+        /** Истёк TTL записи */
+        EXPIRED,
+        /** Вытеснена по лимиту числа записей или памяти */
+        EVICTED,
+        /** Удалена явно */
+        REMOVED
+    }
+
+    void onEviction(String city, WeatherData data, Cause cause);
+}
@@ -1,126 +1,701 @@
 package com.weather.service;
 
+import com.weather.config.Units;
+import com.weather.config.WeatherDescriptions;
+import com.weather.dto.WeatherResponse;
+import com.weather.model.CityMetricValue;
+import com.weather.model.MetricAggregate;
 import com.weather.model.WeatherData;
+import com.weather.model.WeatherMetric;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Менеджер кэша с LRU политикой и TTL
+ * Менеджер кэша с LRU политикой и TTL.
+ * <p>
+ * Размер ограничен и числом записей, и оценкой занимаемой памяти в байтах:
+ * при превышении любого из лимитов вытесняются самые давно использованные записи, O(1) на запись.
+ * <p>
+ * С политикой допуска TinyLFU новый город попадает в заполненный кэш, только если
+ * по частотному скетчу он популярнее кандидата на вытеснение. Так разовые запросы
+ * (например, обход краулером) не вымывают горячие города.
+ * <p>
+ * Сроки записей лежат в иерархическом колесе таймеров: фоновая задача раз в секунду удаляет
+ * истёкшие записи, даже если к ним больше не обращаются. На пути чтения время берётся из грубых часов.
+ * Об удалении записей сообщается подписчикам CacheEvictionListener.
+ * <p>
+ * Ёмкость и TTL меняются на ходу (setCapacity, setTtlMinutes) без сброса закэшированных данных.
+ * <p>
+ * Истёкшая запись может храниться ещё staleRetention (setStaleRetentionMinutes): обычное чтение её
+ * не видит, но getStaleResponse отдаёт её вызывающему, у которого истекает дедлайн.
  */
 public class CacheManager {
     private static final Logger logger = LoggerFactory.getLogger(CacheManager.class);
+    private static final int UNITS_COUNT = Units.values().length;
+    private static final WeatherDescriptions DESCRIPTIONS = WeatherDescriptions.getInstance();
+    private static final int LANGUAGE_COUNT = DESCRIPTIONS.getLanguageCount();
+    private static final long WHEEL_TICK_MILLIS = 1000;
+    // Столько записей вытесняется за один захват блокировки при уменьшении ёмкости
+    private static final int RESIZE_EVICTION_BATCH = 64;
 
-    private final LinkedHashMap<String, WeatherData> cache;
-    private final int capacity;
-    private final long ttlMillis;
-    private final ReentrantReadWriteLock lock;
+    private final LinkedHashMap<String, CacheEntry> cache;
+    private final ReentrantLock lock;
+    private final boolean frequencyAdmission;
+    private final CoarseClock clock;
+    private final TimingWheel<String> wheel;
+    private final List<CacheEvictionListener> listeners;
+    private final List<Removal> pendingRemovals;
+    // Колоночная копия показателей для сводных запросов, обновляется под той же блокировкой
+    private final ObservationColumns columns;
+    private volatile boolean removalsPending;
+    private ScheduledFuture<?> sweepTask;
+
+    private int capacity;
+    private volatile long ttlMillis;
+    private long staleRetentionMillis;
+    private FrequencySketch sketch;
+    private long maxWeightBytes;
+    private long totalWeightBytes;
 
     public CacheManager(int capacity, long ttlMinutes) {
+        this(capacity, ttlMinutes, Long.MAX_VALUE, false);
+    }
+
+    public CacheManager(int capacity, long ttlMinutes, long maxWeightBytes, boolean frequencyAdmission) {
+        this(capacity, ttlMinutes, maxWeightBytes, frequencyAdmission, CoarseClock.system());
+    }
+
+    /**
+     * @param maxWeightBytes     лимит оценочного размера кэша в байтах
+     * @param frequencyAdmission включить допуск TinyLFU вместо безусловного LRU
+     * @param clock              часы для проверки сроков; грубые часы убирают системный вызов с пути чтения
+     */
+    public CacheManager(int capacity, long ttlMinutes, long maxWeightBytes, boolean frequencyAdmission,
+                        CoarseClock clock) {
         this.capacity = capacity;
         this.ttlMillis = ttlMinutes * 60 * 1000;
-        this.lock = new ReentrantReadWriteLock();
-
-        this.cache = new LinkedHashMap<String, WeatherData>(capacity, 0.75f, true) {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<String, WeatherData> eldest) {
-                boolean shouldRemove = size() > capacity;
-                if (shouldRemove) {
-                    logger.debug("Removing eldest cache entry: {}", eldest.getKey());
-                }
-                return shouldRemove;
-            }
-        };
+        this.maxWeightBytes = maxWeightBytes;
+        this.lock = new ReentrantLock();
+        this.frequencyAdmission = frequencyAdmission;
+        this.sketch = frequencyAdmission ? new FrequencySketch(capacity) : null;
+        this.clock = clock;
+        this.wheel = new TimingWheel<>(WHEEL_TICK_MILLIS, clock.currentTimeMillis());
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.pendingRemovals = new ArrayList<>();
+        this.columns = new ObservationColumns();
+
+        // Порядок доступа меняется и при get, поэтому все операции идут под одной эксклюзивной блокировкой
+        this.cache = new LinkedHashMap<>(capacity, 0.75f, true);
 
-        logger.info("CacheManager initialized with capacity: {}, TTL: {} minutes", capacity, ttlMinutes);
+        logger.info("CacheManager initialized with capacity: {}, TTL: {} minutes, memory limit: {} bytes, " +
+                "admission: {}", capacity, ttlMinutes, maxWeightBytes, frequencyAdmission ? "TinyLFU" : "LRU");
     }
 
 
     public WeatherData get(String city) {
-        lock.readLock().lock();
-        try {
-            WeatherData data = cache.get(city);
-            if (data != null && isDataValid(data)) {
-                logger.debug("Cache hit for city: {}", city);
-                return data;
-            } else if (data != null) {
-                logger.debug("Cache data expired for city: {}", city);
-                remove(city); // Remove expired data
+        lock.lock();
+        try {
+            CacheEntry entry = lookup(city);
+            return entry != null ? entry.data : null;
+        } finally {
+            lock.unlock();
+            dispatchRemovals();
+        }
+    }
+
+    /**
+     * Готовый ответ для города в стандартных единицах, построенный один раз при записи в кэш.
+     * Путь попадания не создаёт объектов и не пишет в лог; экземпляр общий и не должен изменяться.
+     */
+    public WeatherResponse getResponse(String city) {
+        return getResponse(city, Units.STANDARD, 0);
+    }
+
+    public WeatherResponse getResponse(String city, Units units) {
+        return getResponse(city, units, 0);
+    }
+
+    /**
+     * Готовый ответ в заданных единицах и на языке с индексом из WeatherDescriptions.
+     * Представление для каждой пары строится из того же наблюдения при первом обращении
+     * и дальше переиспользуется.
+     */
+    public WeatherResponse getResponse(String city, Units units, int languageIndex) {
+        lock.lock();
+        try {
+            CacheEntry entry = lookup(city);
+            return entry != null ? view(entry, units, languageIndex) : null;
+        } finally {
+            lock.unlock();
+            dispatchRemovals();
+        }
+    }
+
+    private WeatherResponse view(CacheEntry entry, Units units, int languageIndex) {
+        int slot = units.ordinal() * LANGUAGE_COUNT + languageIndex;
+        WeatherResponse view = entry.views[slot];
+        if (view == null) {
+            view = new WeatherResponse(entry.data, units, DESCRIPTIONS.getLanguages().get(languageIndex));
+            entry.views[slot] = view;
+            long extra = WeatherDataWeigher.responseView();
+            entry.weight += extra;
+            totalWeightBytes += extra;
+            // Представления растят вес записи и на попаданиях: бюджет памяти проверяется сразу
+            if (totalWeightBytes > maxWeightBytes) {
+                evictIfNeeded();
             }
+        }
+        return view;
+    }
+
+    private CacheEntry lookup(String city) {
+        if (sketch != null) {
+            sketch.increment(city);
+        }
+        CacheEntry entry = cache.get(city);
+        if (entry == null) {
             return null;
+        }
+        long now = clock.currentTimeMillis();
+        if (now < entry.freshUntil) {
+            entry.hits++;
+            return entry;
+        }
+        if (now >= entry.timer.getDeadline()) {
+            logger.debug("Cache data expired for city: {}", city);
+            removeEntry(city, CacheEvictionListener.Cause.EXPIRED); // Remove expired data
+        }
+        return null;
+    }
+
+    /**
+     * Ответ из кэша даже с истёкшим TTL, пока не прошёл срок хранения устаревших записей.
+     * Для отката, когда свежие данные не успевают к дедлайну; null, если записи нет.
+     */
+    public WeatherResponse getStaleResponse(String city, Units units, int languageIndex) {
+        lock.lock();
+        try {
+            CacheEntry entry = cache.get(city);
+            if (entry == null || clock.currentTimeMillis() >= entry.timer.getDeadline()) {
+                return null;
+            }
+            return view(entry, units, languageIndex);
         } finally {
-            lock.readLock().unlock();
+            lock.unlock();
+            dispatchRemovals();
         }
     }
 
 
-    public void put(String city, WeatherData data) {
+    /**
+     * @return true, если запись осталась в кэше: её не отклонил TinyLFU и не вытеснили лимиты
+     */
+    public boolean put(String city, WeatherData data) {
         if (city == null || data == null) {
             logger.warn("Attempt to put null city or data into cache");
-            return;
+            return false;
+        }
+
+        long weight = WeatherDataWeigher.estimate(city, data);
+        WeatherResponse response = new WeatherResponse(data);
+        lock.lock();
+        try {
+            if (sketch != null && !cache.containsKey(city) && !admit(city, weight)) {
+                logger.debug("Cache admission rejected for city: {}", city);
+                return false;
+            }
+            long freshUntil = data.getTimestamp() + ttlMillis;
+            TimingWheel.Node<String> timer = wheel.schedule(city, freshUntil + staleRetentionMillis);
+            CacheEntry created = new CacheEntry(data, response, weight, timer, freshUntil);
+            CacheEntry previous = cache.put(city, created);
+            columns.update(city, data, freshUntil);
+            if (previous != null) {
+                // Новое наблюдение того же города не сбрасывает ещё не собранные попадания
+                created.hits = previous.hits;
+                wheel.cancel(previous.timer);
+                totalWeightBytes -= previous.weight;
+            }
+            totalWeightBytes += weight;
+            evictIfNeeded();
+            logger.debug("Added to cache: {} ({} bytes)", city, weight);
+            return cache.containsKey(city);
+        } finally {
+            lock.unlock();
+            dispatchRemovals();
+        }
+    }
+
+    /**
+     * Обновление записи при опросе. Если upstream отдал то же наблюдение, запись остаётся прежней,
+     * а её срок продлевается: ни новых ответов, ни уведомлений. Иначе запись заменяется как в put.
+     *
+     * @return true, если наблюдение изменилось и новая запись принята в кэш
+     */
+    public boolean refresh(String city, WeatherData data) {
+        if (city == null || data == null) {
+            logger.warn("Attempt to refresh null city or data in cache");
+            return false;
         }
 
-        lock.writeLock().lock();
+        lock.lock();
         try {
-            cache.put(city, data);
-            logger.debug("Added to cache: {}", city);
+            CacheEntry entry = cache.get(city);
+            if (entry != null && entry.data.isSameObservation(data)) {
+                entry.confirmedAt = data.getTimestamp();
+                entry.freshUntil = entry.confirmedAt + ttlMillis;
+                wheel.reschedule(entry.timer, entry.freshUntil + staleRetentionMillis);
+                columns.setFreshUntil(city, entry.freshUntil);
+                logger.debug("Observation unchanged, TTL extended for city: {}", city);
+                return false;
+            }
         } finally {
-            lock.writeLock().unlock();
+            lock.unlock();
         }
+        return put(city, data);
     }
 
     public void remove(String city) {
-        lock.writeLock().lock();
+        lock.lock();
         try {
-            cache.remove(city);
+            removeEntry(city, CacheEvictionListener.Cause.REMOVED);
             logger.debug("Removed from cache: {}", city);
         } finally {
-            lock.writeLock().unlock();
+            lock.unlock();
+            dispatchRemovals();
         }
     }
 
     public boolean isDataValid(WeatherData data) {
         if (data == null) return false;
 
-        long currentTime = System.currentTimeMillis();
-        long dataAge = currentTime - data.getTimestamp();
-        boolean isValid = dataAge < ttlMillis;
+        long dataAge = clock.currentTimeMillis() - data.getTimestamp();
+        return dataAge < ttlMillis;
+    }
 
-        logger.debug("Data age: {} ms, TTL: {} ms, Valid: {}", dataAge, ttlMillis, isValid);
-        return isValid;
+    /**
+     * Подписка на удаление записей: по TTL, по лимитам и явное
+     */
+    public void addEvictionListener(CacheEvictionListener listener) {
+        listeners.add(listener);
     }
 
+    public void removeEvictionListener(CacheEvictionListener listener) {
+        listeners.remove(listener);
+    }
 
+    /**
+     * Запускает фоновое удаление истёкших записей на общем планировщике
+     */
+    public void startExpirySweeper(ScheduledExecutorService scheduler) {
+        lock.lock();
+        try {
+            if (sweepTask == null) {
+                sweepTask = scheduler.scheduleAtFixedRate(this::expireEntries,
+                        WHEEL_TICK_MILLIS, WHEEL_TICK_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void stopExpirySweeper() {
+        lock.lock();
+        try {
+            if (sweepTask != null) {
+                sweepTask.cancel(false);
+                sweepTask = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Продвигает колесо таймеров до текущего времени и удаляет истёкшие записи
+     */
+    void expireEntries() {
+        try {
+            lock.lock();
+            try {
+                wheel.advance(clock.currentTimeMillis(), this::expire);
+            } finally {
+                lock.unlock();
+            }
+            dispatchRemovals();
+        } catch (RuntimeException e) {
+            logger.error("Error during cache expiry sweep", e);
+        }
+    }
+
+
+    /**
+     * Очищает кэш без уведомления подписчиков
+     */
     public void clear() {
-        lock.writeLock().lock();
+        lock.lock();
         try {
             cache.clear();
+            wheel.clear();
+            columns.clear();
+            totalWeightBytes = 0;
             logger.info("Cache cleared");
         } finally {
-            lock.writeLock().unlock();
+            lock.unlock();
         }
     }
 
 
     public int size() {
-        lock.readLock().lock();
+        lock.lock();
         try {
             return cache.size();
         } finally {
-            lock.readLock().unlock();
+            lock.unlock();
         }
     }
 
 
+    /**
+     * Города с неистёкшими данными
+     */
     public String[] getAllCities() {
-        lock.readLock().lock();
+        lock.lock();
+        try {
+            long now = clock.currentTimeMillis();
+            List<String> cities = new ArrayList<>(cache.size());
+            for (Map.Entry<String, CacheEntry> entry : cache.entrySet()) {
+                if (now < entry.getValue().freshUntil) {
+                    cities.add(entry.getKey());
+                }
+            }
+            return cities.toArray(new String[0]);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Сводка показателя по свежим записям кэша; countryCode == null - по всем городам
+     */
+    public MetricAggregate aggregate(WeatherMetric metric, String countryCode) {
+        return columns.aggregate(metric, countryCode, clock.currentTimeMillis());
+    }
+
+    /**
+     * Сводки показателя по странам городов из кэша
+     */
+    public List<MetricAggregate> aggregateByCountry(WeatherMetric metric) {
+        return columns.aggregateByCountry(metric, clock.currentTimeMillis());
+    }
+
+    /**
+     * Города из кэша с наибольшим (highest) или наименьшим значением показателя
+     */
+    public List<CityMetricValue> topCities(WeatherMetric metric, int limit, boolean highest) {
+        return columns.top(metric, limit, highest, clock.currentTimeMillis());
+    }
+
+    /**
+     * До limit городов кэша с наибольшим числом попаданий с прошлого вызова. Счётчики всех записей
+     * после этого обнуляются, поэтому каждый вызов отдаёт только прирост за период.
+     * Путь попадания лишь увеличивает поле записи под уже взятой блокировкой.
+     */
+    public Map<String, Long> drainHitCounts(int limit) {
+        List<Map.Entry<String, Long>> candidates = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Map.Entry<String, CacheEntry> entry : cache.entrySet()) {
+                CacheEntry cacheEntry = entry.getValue();
+                if (cacheEntry.hits > 0) {
+                    candidates.add(Map.entry(entry.getKey(), cacheEntry.hits));
+                    cacheEntry.hits = 0;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (limit <= 0) {
+            return Map.of();
+        }
+        candidates.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        Map<String, Long> hottest = new LinkedHashMap<>();
+        for (int i = 0; i < candidates.size() && i < limit; i++) {
+            hottest.put(candidates.get(i).getKey(), candidates.get(i).getValue());
+        }
+        return hottest;
+    }
+
+    /**
+     * Оценочный размер всех записей кэша в байтах
+     */
+    public long getWeightBytes() {
+        lock.lock();
+        try {
+            return totalWeightBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public int getCapacity() {
+        lock.lock();
+        try {
+            return capacity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Меняет ёмкость на ходу. При уменьшении лишние записи вытесняются порциями по
+     * RESIZE_EVICTION_BATCH, блокировка между порциями отпускается, чтобы чтения не ждали всю чистку.
+     */
+    public void setCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive");
+        }
+        int evicted = 0;
+        boolean more = true;
+        while (more) {
+            lock.lock();
+            try {
+                if (evicted == 0) {
+                    if (frequencyAdmission && capacity > this.capacity) {
+                        // Скетч рассчитан на прежнюю ёмкость; частоты набираются заново
+                        sketch = new FrequencySketch(capacity);
+                    }
+                    this.capacity = capacity;
+                }
+                int batch = evictExcess(RESIZE_EVICTION_BATCH);
+                evicted += batch;
+                more = batch == RESIZE_EVICTION_BATCH;
+            } finally {
+                lock.unlock();
+                dispatchRemovals();
+            }
+        }
+        logger.info("Cache capacity set to {}, {} entries evicted", capacity, evicted);
+    }
+
+    /**
+     * Меняет TTL без потери данных: сроки всех записей пересчитываются от последнего подтверждения
+     * наблюдения (получения или продления при опросе).
+     * Записи старше нового TTL удаляются ближайшим проходом фоновой очистки.
+     */
+    public void setTtlMinutes(long ttlMinutes) {
+        if (ttlMinutes <= 0) {
+            throw new IllegalArgumentException("Cache TTL must be positive");
+        }
+        lock.lock();
+        try {
+            this.ttlMillis = ttlMinutes * 60 * 1000;
+            rescheduleAll();
+        } finally {
+            lock.unlock();
+        }
+        logger.info("Cache TTL set to {} minutes", ttlMinutes);
+    }
+
+    /**
+     * Сколько хранить запись после истечения TTL для отката по дедлайну; 0 - удалять сразу.
+     * Устаревшие записи занимают место в кэше и вытесняются первыми, как давно не использованные.
+     */
+    public void setStaleRetentionMinutes(long retentionMinutes) {
+        lock.lock();
+        try {
+            this.staleRetentionMillis = Math.max(0, retentionMinutes) * 60 * 1000;
+            rescheduleAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void rescheduleAll() {
+        for (Map.Entry<String, CacheEntry> item : cache.entrySet()) {
+            CacheEntry entry = item.getValue();
+            // От последнего подтверждения, а не от исходного наблюдения: продления при опросе сохраняются
+            entry.freshUntil = entry.confirmedAt + ttlMillis;
+            wheel.reschedule(entry.timer, entry.freshUntil + staleRetentionMillis);
+            columns.setFreshUntil(item.getKey(), entry.freshUntil);
+        }
+    }
+
+    CoarseClock getClock() {
+        return clock;
+    }
+
+    public long getMaxWeightBytes() {
+        lock.lock();
+        try {
+            return maxWeightBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Меняет лимит памяти (квоту провайдера); при уменьшении лишние записи вытесняются сразу
+     */
+    public void setMaxWeightBytes(long maxWeightBytes) {
+        lock.lock();
         try {
-            return cache.keySet().toArray(new String[0]);
+            this.maxWeightBytes = maxWeightBytes;
+            evictIfNeeded();
         } finally {
-            lock.readLock().unlock();
+            lock.unlock();
+            dispatchRemovals();
+        }
+    }
+
+    /**
+     * Решение TinyLFU: пока есть место, допускаем всех; иначе новый город должен быть
+     * популярнее самой давно использованной записи, которую он вытеснит
+     */
+    private boolean admit(String city, long weight) {
+        if (cache.size() < capacity && totalWeightBytes + weight <= maxWeightBytes) {
+            return true;
+        }
+        Iterator<Map.Entry<String, CacheEntry>> iterator = cache.entrySet().iterator();
+        if (!iterator.hasNext()) {
+            return true;
+        }
+        Map.Entry<String, CacheEntry> victim = iterator.next();
+        // Устаревшая запись уступает место любому новому городу
+        if (clock.currentTimeMillis() >= victim.getValue().freshUntil) {
+            return true;
+        }
+        return sketch.frequency(city) > sketch.frequency(victim.getKey());
+    }
+
+    private void evictIfNeeded() {
+        evictExcess(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Вытесняет самые давно использованные записи сверх лимитов, не больше maxEntries
+     *
+     * @return сколько записей вытеснено
+     */
+    private int evictExcess(int maxEntries) {
+        int evicted = 0;
+        Iterator<Map.Entry<String, CacheEntry>> iterator = cache.entrySet().iterator();
+        while ((cache.size() > capacity || totalWeightBytes > maxWeightBytes) && evicted < maxEntries
+                && iterator.hasNext()) {
+            Map.Entry<String, CacheEntry> eldest = iterator.next();
+            iterator.remove();
+            wheel.cancel(eldest.getValue().timer);
+            totalWeightBytes -= eldest.getValue().weight;
+            recordRemoval(eldest.getKey(), eldest.getValue(), CacheEvictionListener.Cause.EVICTED);
+            logger.debug("Removing eldest cache entry: {}", eldest.getKey());
+            evicted++;
+        }
+        return evicted;
+    }
+
+    private void removeEntry(String city, CacheEvictionListener.Cause cause) {
+        CacheEntry removed = cache.remove(city);
+        if (removed != null) {
+            wheel.cancel(removed.timer);
+            totalWeightBytes -= removed.weight;
+            recordRemoval(city, removed, cause);
+        }
+    }
+
+    // Узел колеса уже отвязан
+    private void expire(String city) {
+        CacheEntry removed = cache.remove(city);
+        if (removed != null) {
+            totalWeightBytes -= removed.weight;
+            recordRemoval(city, removed, CacheEvictionListener.Cause.EXPIRED);
+            logger.debug("Cache entry expired: {}", city);
+        }
+    }
+
+    private void recordRemoval(String city, CacheEntry entry, CacheEvictionListener.Cause cause) {
+        columns.remove(city);
+        if (!listeners.isEmpty()) {
+            pendingRemovals.add(new Removal(city, entry.data, cause));
+            removalsPending = true;
+        }
+    }
+
+    /**
+     * Уведомляет подписчиков об удалениях, накопленных под блокировкой. Вызывается после её снятия.
+     */
+    private void dispatchRemovals() {
+        if (!removalsPending) {
+            return;
+        }
+        List<Removal> removals;
+        lock.lock();
+        try {
+            removals = new ArrayList<>(pendingRemovals);
+            pendingRemovals.clear();
+            removalsPending = false;
+        } finally {
+            lock.unlock();
+        }
+
+        for (Removal removal : removals) {
+            for (CacheEvictionListener listener : listeners) {
+                try {
+                    listener.onEviction(removal.city, removal.data, removal.cause);
+                } catch (RuntimeException e) {
+                    logger.warn("Cache eviction listener failed for city: {}", removal.city, e);
+                }
+            }
+        }
+    }
+
+    private static final class Removal {
+        final String city;
+        final WeatherData data;
+        final CacheEvictionListener.Cause cause;
+
+        Removal(String city, WeatherData data, CacheEvictionListener.Cause cause) {
+            this.city = city;
+            this.data = data;
+            this.cause = cause;
+        }
+    }
+
+    private static final class CacheEntry {
+        final WeatherData data;
+        // Представления ответа по (Units.ordinal(), индекс языка); STANDARD на исходном языке строится при записи
+        final WeatherResponse[] views;
+        final TimingWheel.Node<String> timer;
+        long weight;
+        // Когда upstream последний раз подтвердил наблюдение: при записи и при каждом продлении в refresh
+        long confirmedAt;
+        // До этого момента запись свежая; после - устаревшая, пока не сработает timer
+        long freshUntil;
+        // Попадания с прошлого drainHitCounts
+        long hits;
+
+        CacheEntry(WeatherData data, WeatherResponse response, long weight, TimingWheel.Node<String> timer,
+                   long freshUntil) {
+            this.data = data;
+            this.views = new WeatherResponse[UNITS_COUNT * LANGUAGE_COUNT];
+            this.views[Units.STANDARD.ordinal() * LANGUAGE_COUNT] = response;
+            this.weight = weight;
+            this.timer = timer;
+            this.confirmedAt = data.getTimestamp();
+            this.freshUntil = freshUntil;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,139 @@
+package com.weather.service;
+
+import com.weather.exception.ApiCallLimitExceededException;
+import com.weather.exception.InvalidApiKeyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Параллельный прогрев кэша списком городов. Несколько рабочих задач разбирают общую очередь,
+ * а запросы к API выдаются не чаще ratePerSecond в секунду на все задачи вместе.
+ * Ошибка ключа или лимита API прекращает прогрев: остальные запросы упрутся в то же самое.
+ */
+final class CacheWarmer {
+    private static final Logger logger = LoggerFactory.getLogger(CacheWarmer.class);
+
+    private final Queue<String> pending;
+    private final int total;
+    private final long intervalNanos;
+    private final AtomicLong nextPermitNanos;
+    private final AtomicInteger completed;
+    private final AtomicInteger failed;
+    private final CountDownLatch done;
+    private volatile boolean cancelled;
+
+    CacheWarmer(List<String> cities, double ratePerSecond) {
+        this.pending = new ConcurrentLinkedQueue<>(cities);
+        this.total = cities.size();
+        this.intervalNanos = ratePerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond) : 0;
+        this.nextPermitNanos = new AtomicLong(System.nanoTime());
+        this.completed = new AtomicInteger();
+        this.failed = new AtomicInteger();
+        this.done = new CountDownLatch(1);
+    }
+
+    /**
+     * Запускает concurrency рабочих задач на executor; loader загружает город в кэш
+     */
+    void start(Executor executor, int concurrency, Consumer<String> loader) {
+        int workers = Math.max(1, Math.min(concurrency, total));
+        if (total == 0) {
+            done.countDown();
+            return;
+        }
+
+        logger.info("Cache warm-up started: {} cities, {} workers", total, workers);
+        AtomicInteger running = new AtomicInteger(workers);
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < workers; i++) {
+            executor.execute(() -> {
+                try {
+                    work(loader);
+                } finally {
+                    if (running.decrementAndGet() == 0) {
+                        done.countDown();
+                        logger.info("Cache warm-up finished in {} ms: {} loaded, {} failed, {} skipped",
+                                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                                completed.get(), failed.get(), total - completed.get() - failed.get());
+                    }
+                }
+            });
+        }
+    }
+
+    private void work(Consumer<String> loader) {
+        String city;
+        while (!cancelled && (city = pending.poll()) != null) {
+            try {
+                acquirePermit();
+                loader.accept(city);
+                completed.incrementAndGet();
+            } catch (InvalidApiKeyException | ApiCallLimitExceededException e) {
+                failed.incrementAndGet();
+                logger.warn("Cache warm-up aborted: {}", e.getMessage());
+                cancel();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                logger.debug("Cache warm-up failed for city: {}, error: {}", city, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Ждёт своего слота в общем расписании запросов
+     */
+    private void acquirePermit() throws InterruptedException {
+        if (intervalNanos == 0) {
+            return;
+        }
+        while (true) {
+            long now = System.nanoTime();
+            long slot = nextPermitNanos.get();
+            long start = Math.max(slot, now);
+            if (nextPermitNanos.compareAndSet(slot, start + intervalNanos)) {
+                if (start > now) {
+                    TimeUnit.NANOSECONDS.sleep(start - now);
+                }
+                return;
+            }
+        }
+    }
+
+    void cancel() {
+        cancelled = true;
+        pending.clear();
+    }
+
+    boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    int getTotal() {
+        return total;
+    }
+
+    int getCompleted() {
+        return completed.get();
+    }
+
+    int getFailed() {
+        return failed.get();
+    }
+}
@@ -0,0 +1,387 @@
+package com.weather.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.weather.model.CityInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Каталог городов OpenWeatherMap (city.list.json) в виде отображённого в память индекса.
+ * <p>
+ * При первом открытии список городов один раз разбирается потоково и записывается в бинарный файл
+ * индекса рядом с ним; дальше индекс только отображается в память, в куче остаются лишь несколько полей.
+ * Записи фиксированного размера отсортированы по свёрнутому названию (нижний регистр, без диакритики),
+ * поэтому поиск по префиксу - двоичный поиск плюс просмотр подряд идущих записей. Второй массив,
+ * отсортированный по идентификатору, даёт поиск города по id.
+ * <p>
+ * Формат: заголовок, записи по RECORD_SIZE байт, пары (id, номер записи), строки UTF-8.
+ * Все чтения абсолютные, поэтому каталог потокобезопасен без блокировок.
+ */
+public final class CityCatalog {
+    private static final Logger logger = LoggerFactory.getLogger(CityCatalog.class);
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private static final int MAGIC = 0x57434331; // "WCC1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    // keyOffset, keyLength, nameLength, nameOffset, id, lat, lon, country[2], state[2]
+    private static final int RECORD_SIZE = 32;
+    private static final int ID_ENTRY_SIZE = 12;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int recordsOffset;
+    private final int idIndexOffset;
+    private final int stringsOffset;
+
+    private CityCatalog(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a city catalog index or unsupported version");
+        }
+        this.buffer = buffer;
+        this.count = buffer.getInt(8);
+        this.recordsOffset = buffer.getInt(12);
+        this.idIndexOffset = buffer.getInt(16);
+        this.stringsOffset = buffer.getInt(20);
+    }
+
+    /**
+     * Открывает каталог. Если индекса нет или он старше списка городов, индекс строится заново.
+     *
+     * @param cityList  city.list.json или city.list.json.gz
+     * @param indexFile файл бинарного индекса
+     */
+    public static CityCatalog open(Path cityList, Path indexFile) throws IOException {
+        if (!Files.exists(indexFile)
+                || Files.getLastModifiedTime(indexFile).compareTo(Files.getLastModifiedTime(cityList)) < 0) {
+            build(cityList, indexFile);
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            CityCatalog catalog = new CityCatalog(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            logger.info("City catalog mapped from {}: {} cities, {} bytes", indexFile, catalog.count, channel.size());
+            return catalog;
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Города, свёрнутое название которых начинается с prefix, по алфавиту, не больше limit
+     */
+    public List<CityInfo> suggest(String prefix, int limit) {
+        if (prefix == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        byte[] key = fold(prefix).getBytes(StandardCharsets.UTF_8);
+        if (key.length == 0) {
+            return Collections.emptyList();
+        }
+
+        List<CityInfo> result = new ArrayList<>(Math.min(limit, 16));
+        for (int record = lowerBound(key); record < count && result.size() < limit; record++) {
+            if (!startsWith(record, key)) {
+                break;
+            }
+            result.add(read(record));
+        }
+        return result;
+    }
+
+    /**
+     * Город по идентификатору OpenWeatherMap; null, если его нет в каталоге
+     */
+    public CityInfo findById(long id) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = buffer.getLong(idIndexOffset + mid * ID_ENTRY_SIZE);
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return read(buffer.getInt(idIndexOffset + mid * ID_ENTRY_SIZE + 8));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Первая запись, ключ которой не меньше key
+     */
+    private int lowerBound(byte[] key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareKey(mid, key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compareKey(int record, byte[] key) {
+        int base = recordsOffset + record * RECORD_SIZE;
+        int offset = stringsOffset + buffer.getInt(base);
+        int length = Short.toUnsignedInt(buffer.getShort(base + 4));
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int diff = Byte.toUnsignedInt(buffer.get(offset + i)) - Byte.toUnsignedInt(key[i]);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - key.length;
+    }
+
+    private boolean startsWith(int record, byte[] prefix) {
+        int base = recordsOffset + record * RECORD_SIZE;
+        int offset = stringsOffset + buffer.getInt(base);
+        int length = Short.toUnsignedInt(buffer.getShort(base + 4));
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(offset + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private CityInfo read(int record) {
+        int base = recordsOffset + record * RECORD_SIZE;
+        int nameLength = Short.toUnsignedInt(buffer.getShort(base + 6));
+        String name = readString(stringsOffset + buffer.getInt(base + 8), nameLength);
+        long id = buffer.getLong(base + 12);
+        double lat = buffer.getFloat(base + 20);
+        double lon = buffer.getFloat(base + 24);
+        String country = readCode(base + 28);
+        String state = readCode(base + 30);
+        return new CityInfo(id, name, state, country, lat, lon);
+    }
+
+    private String readString(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String readCode(int offset) {
+        byte first = buffer.get(offset);
+        if (first == 0) {
+            return "";
+        }
+        byte second = buffer.get(offset + 1);
+        return second == 0 ? String.valueOf((char) first) : new String(new char[]{(char) first, (char) second});
+    }
+
+    /**
+     * Свёртка названия для поиска: без диакритики, в нижнем регистре, без крайних пробелов
+     */
+    static String fold(String name) {
+        String trimmed = name.trim();
+        if (isAscii(trimmed)) {
+            return trimmed.toLowerCase(Locale.ROOT);
+        }
+        String decomposed = Normalizer.normalize(trimmed, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Разбирает список городов потоково и пишет индекс во временный файл, затем атомарно подменяет
+     */
+    private static void build(Path cityList, Path indexFile) throws IOException {
+        long started = System.currentTimeMillis();
+        List<Entry> entries = parse(cityList);
+        Entry[] byKey = entries.toArray(new Entry[0]);
+        Arrays.sort(byKey, (a, b) -> {
+            int cmp = Arrays.compareUnsigned(a.key, b.key);
+            return cmp != 0 ? cmp : Long.compare(a.id, b.id);
+        });
+        for (int i = 0; i < byKey.length; i++) {
+            byKey[i].record = i;
+        }
+        Entry[] byId = byKey.clone();
+        Arrays.sort(byId, (a, b) -> Long.compare(a.id, b.id));
+
+        int recordsOffset = HEADER_SIZE;
+        int idIndexOffset = recordsOffset + byKey.length * RECORD_SIZE;
+        int stringsOffset = idIndexOffset + byId.length * ID_ENTRY_SIZE;
+
+        Path parent = indexFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(byKey.length);
+            out.writeInt(recordsOffset);
+            out.writeInt(idIndexOffset);
+            out.writeInt(stringsOffset);
+            out.writeLong(0);
+
+            int stringPosition = 0;
+            for (Entry entry : byKey) {
+                out.writeInt(stringPosition);
+                out.writeShort(entry.key.length);
+                out.writeShort(entry.name.length);
+                out.writeInt(stringPosition + entry.key.length);
+                out.writeLong(entry.id);
+                out.writeFloat(entry.lat);
+                out.writeFloat(entry.lon);
+                writeCode(out, entry.country);
+                writeCode(out, entry.state);
+                stringPosition += entry.key.length + entry.name.length;
+            }
+            for (Entry entry : byId) {
+                out.writeLong(entry.id);
+                out.writeInt(entry.record);
+            }
+            for (Entry entry : byKey) {
+                out.write(entry.key);
+                out.write(entry.name);
+            }
+        }
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("City catalog index built from {} in {} ms: {} cities", cityList,
+                System.currentTimeMillis() - started, byKey.length);
+    }
+
+    private static void writeCode(DataOutputStream out, String code) throws IOException {
+        out.writeByte(code.length() > 0 ? code.charAt(0) : 0);
+        out.writeByte(code.length() > 1 ? code.charAt(1) : 0);
+    }
+
+    private static List<Entry> parse(Path cityList) throws IOException {
+        List<Entry> entries = new ArrayList<>(1 << 18);
+        try (InputStream input = open(cityList); JsonParser parser = jsonFactory.createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "City list is not a JSON array");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                Entry entry = parseCity(parser);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static InputStream open(Path cityList) throws IOException {
+        InputStream input = new BufferedInputStream(Files.newInputStream(cityList), 1 << 16);
+        return cityList.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(input, 1 << 16) : input;
+    }
+
+    private static Entry parseCity(JsonParser parser) throws IOException {
+        long id = -1;
+        String name = null;
+        String state = "";
+        String country = "";
+        float lat = 0;
+        float lon = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "id" -> id = parser.getValueAsLong(-1);
+                case "name" -> name = parser.getValueAsString();
+                case "state" -> state = nonNull(parser.getValueAsString());
+                case "country" -> country = nonNull(parser.getValueAsString());
+                case "coord" -> {
+                    if (value == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String coord = parser.getCurrentName();
+                            parser.nextToken();
+                            if ("lat".equals(coord)) {
+                                lat = (float) parser.getValueAsDouble();
+                            } else if ("lon".equals(coord)) {
+                                lon = (float) parser.getValueAsDouble();
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        if (id < 0 || name == null || name.isBlank()) {
+            return null;
+        }
+        byte[] key = fold(name).getBytes(StandardCharsets.UTF_8);
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (key.length > 0xFFFF || nameBytes.length > 0xFFFF) {
+            return null;
+        }
+        return new Entry(id, key, nameBytes, state, country, lat, lon);
+    }
+
+    private static String nonNull(String value) {
+        return value != null ? value : "";
+    }
+
+    private static final class Entry {
+        final long id;
+        final byte[] key;
+        final byte[] name;
+        final String state;
+        final String country;
+        final float lat;
+        final float lon;
+        int record;
+
+        Entry(long id, byte[] key, byte[] name, String state, String country, float lat, float lon) {
+            this.id = id;
+            this.key = key;
+            this.name = name;
+            this.state = state;
+            this.country = country;
+            this.lat = lat;
+            this.lon = lon;
+        }
+    }
+}
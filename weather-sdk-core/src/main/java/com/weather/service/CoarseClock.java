@@ -0,0 +1,84 @@
+package com.weather.service;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Грубые часы для горячего пути кэша: время обновляется фоновой задачей раз в тик,
+ * а чтение - это одно volatile-поле вместо System.currentTimeMillis().
+ * Без планировщика часы читают источник времени напрямую.
+ * <p>
+ * Источник времени подменяемый: ускоренные часы (speed &gt; 1) сжимают часы работы SDK в минуты
+ * для длительных прогонов, не меняя настроек TTL и опроса.
+ */
+public final class CoarseClock {
+    private static final CoarseClock SYSTEM = new CoarseClock(System::currentTimeMillis, 1, false);
+
+    private final LongSupplier source;
+    private final double speed;
+    private final boolean ticking;
+    private volatile long nowMillis;
+
+    private CoarseClock(LongSupplier source, double speed, boolean ticking) {
+        this.source = source;
+        this.speed = speed;
+        this.ticking = ticking;
+        this.nowMillis = source.getAsLong();
+    }
+
+    /**
+     * Часы, читающие системное время при каждом вызове
+     */
+    public static CoarseClock system() {
+        return SYSTEM;
+    }
+
+    /**
+     * Часы, читающие заданный источник при каждом вызове, например ручные часы в тестах
+     */
+    public static CoarseClock of(LongSupplier source) {
+        return new CoarseClock(source, 1, false);
+    }
+
+    /**
+     * Часы с точностью tickMillis, обновляемые задачей на общем планировщике
+     */
+    public static CoarseClock start(ScheduledExecutorService scheduler, long tickMillis) {
+        return start(scheduler, tickMillis, 1);
+    }
+
+    /**
+     * Часы, идущие от текущего момента в speed раз быстрее реального времени; 1 - системное время
+     */
+    public static CoarseClock start(ScheduledExecutorService scheduler, long tickMillis, double speed) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Clock speed must be positive");
+        }
+        CoarseClock clock = new CoarseClock(speed == 1 ? System::currentTimeMillis : accelerated(speed), speed, true);
+        scheduler.scheduleAtFixedRate(() -> clock.nowMillis = clock.source.getAsLong(),
+                tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        return clock;
+    }
+
+    private static LongSupplier accelerated(double speed) {
+        long originMillis = System.currentTimeMillis();
+        long originNanos = System.nanoTime();
+        return () -> originMillis + (long) ((System.nanoTime() - originNanos) * speed / 1_000_000);
+    }
+
+    public long currentTimeMillis() {
+        return ticking ? nowMillis : source.getAsLong();
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Реальная задержка, за которую по этим часам пройдёт millis; для периодов фоновых задач
+     */
+    public long toRealMillis(long millis) {
+        return Math.max(1, (long) (millis / speed));
+    }
+}
@@ -0,0 +1,92 @@
+package com.weather.service;
+
+import com.weather.model.ForecastData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Кэш прогнозов с LRU политикой и TTL. Прогноз хранится колонками, поэтому
+ * запись на город занимает несколько примитивных массивов вместо сорока объектов.
+ */
+public class ForecastCache {
+    private static final Logger logger = LoggerFactory.getLogger(ForecastCache.class);
+
+    private final LinkedHashMap<String, ForecastData> cache;
+    private final long ttlMillis;
+    private final ReentrantLock lock;
+    private final CoarseClock clock;
+
+    public ForecastCache(int capacity, long ttlMinutes) {
+        this(capacity, ttlMinutes, CoarseClock.system());
+    }
+
+    /**
+     * @param clock часы SDK, по которым провайдер ставит отметку времени прогноза
+     */
+    public ForecastCache(int capacity, long ttlMinutes, CoarseClock clock) {
+        this.clock = clock;
+        this.ttlMillis = ttlMinutes * 60 * 1000;
+        this.lock = new ReentrantLock();
+        this.cache = new LinkedHashMap<>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ForecastData> eldest) {
+                return size() > capacity;
+            }
+        };
+
+        logger.info("ForecastCache initialized with capacity: {}, TTL: {} minutes", capacity, ttlMinutes);
+    }
+
+    public ForecastData get(String city) {
+        lock.lock();
+        try {
+            ForecastData forecast = cache.get(city);
+            if (forecast == null) {
+                return null;
+            }
+            if (clock.currentTimeMillis() - forecast.getTimestamp() < ttlMillis) {
+                return forecast;
+            }
+            cache.remove(city);
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(String city, ForecastData forecast) {
+        if (city == null || forecast == null) {
+            logger.warn("Attempt to put null city or forecast into cache");
+            return;
+        }
+
+        lock.lock();
+        try {
+            cache.put(city, forecast);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            cache.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return cache.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
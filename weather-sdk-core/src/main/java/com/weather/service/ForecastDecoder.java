@@ -0,0 +1,158 @@
+package com.weather.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.weather.model.ForecastData;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Потоковый разбор ответа /forecast сразу в колонки ForecastData, без промежуточного дерева объектов.
+ * Ненужные поля и вложенные объекты пропускаются целиком.
+ */
+final class ForecastDecoder {
+    private static final int INITIAL_POINTS = 40; // 5 дней по 8 точек
+
+    private ForecastDecoder() {
+    }
+
+    /**
+     * @param timestamp время получения ответа, записывается в прогноз
+     */
+    static ForecastData decode(JsonFactory jsonFactory, String body, long timestamp) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Forecast response is not a JSON object");
+            }
+
+            Columns columns = new Columns();
+            String name = null;
+            String country = null;
+            Integer timezone = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("list".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        readPoint(parser, columns);
+                    }
+                } else if ("city".equals(field) && value == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String cityField = parser.getCurrentName();
+                        parser.nextToken();
+                        switch (cityField) {
+                            case "name" -> name = parser.getValueAsString();
+                            case "country" -> country = parser.getValueAsString();
+                            case "timezone" -> timezone = parser.getValueAsInt();
+                            default -> parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            return columns.toForecast(name, country, timezone, timestamp);
+        }
+    }
+
+    private static void readPoint(JsonParser parser, Columns columns) throws IOException {
+        long datetime = 0;
+        double temp = Double.NaN;
+        double windSpeed = Double.NaN;
+        int visibility = ForecastData.UNKNOWN_VISIBILITY;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "dt" -> datetime = parser.getValueAsLong();
+                case "visibility" -> visibility = parser.getValueAsInt(ForecastData.UNKNOWN_VISIBILITY);
+                case "main" -> temp = readNumberField(parser, value, "temp");
+                case "wind" -> windSpeed = readNumberField(parser, value, "speed");
+                default -> parser.skipChildren();
+            }
+        }
+        columns.add(datetime, temp, windSpeed, visibility);
+    }
+
+    private static double readNumberField(JsonParser parser, JsonToken value, String wanted) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return Double.NaN;
+        }
+        double result = Double.NaN;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (wanted.equals(field)) {
+                result = parser.getValueAsDouble(Double.NaN);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return result;
+    }
+
+    private static final class Columns {
+        long[] timestamps = new long[INITIAL_POINTS];
+        double[] temps = new double[INITIAL_POINTS];
+        double[] windSpeeds = new double[INITIAL_POINTS];
+        int[] visibilities = new int[INITIAL_POINTS];
+        int size;
+
+        void add(long datetime, double temp, double windSpeed, int visibility) {
+            if (size == timestamps.length) {
+                int capacity = size * 2;
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                temps = Arrays.copyOf(temps, capacity);
+                windSpeeds = Arrays.copyOf(windSpeeds, capacity);
+                visibilities = Arrays.copyOf(visibilities, capacity);
+            }
+            timestamps[size] = datetime;
+            temps[size] = temp;
+            windSpeeds[size] = windSpeed;
+            visibilities[size] = visibility;
+            size++;
+        }
+
+        ForecastData toForecast(String name, String country, Integer timezone, long timestamp) {
+            // Upstream присылает точки по возрастанию времени; сортируем только если это не так
+            boolean sorted = true;
+            for (int i = 1; i < size && sorted; i++) {
+                sorted = timestamps[i - 1] <= timestamps[i];
+            }
+            if (!sorted) {
+                sortByTime();
+            }
+            return new ForecastData(name, country, timezone,
+                    Arrays.copyOf(timestamps, size), Arrays.copyOf(temps, size),
+                    Arrays.copyOf(windSpeeds, size), Arrays.copyOf(visibilities, size), timestamp);
+        }
+
+        private void sortByTime() {
+            // Сортировка вставками: точек не больше нескольких десятков
+            for (int i = 1; i < size; i++) {
+                long t = timestamps[i];
+                double temp = temps[i];
+                double wind = windSpeeds[i];
+                int visibility = visibilities[i];
+                int j = i - 1;
+                while (j >= 0 && timestamps[j] > t) {
+                    timestamps[j + 1] = timestamps[j];
+                    temps[j + 1] = temps[j];
+                    windSpeeds[j + 1] = windSpeeds[j];
+                    visibilities[j + 1] = visibilities[j];
+                    j--;
+                }
+                timestamps[j + 1] = t;
+                temps[j + 1] = temp;
+                windSpeeds[j + 1] = wind;
+                visibilities[j + 1] = visibility;
+            }
+        }
+    }
+}
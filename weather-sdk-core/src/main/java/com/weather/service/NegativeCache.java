@@ -0,0 +1,197 @@
+package com.weather.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Кэш отрицательных ответов (неизвестные города) с фильтром Блума перед ним.
+ * <p>
+ * Фильтр отвечает "точно нет" без блокировок, точное подтверждение и TTL хранятся
+ * в ограниченной LRU-таблице. Память фиксирована: фильтр имеет постоянный размер
+ * и ротируется по поколениям, таблица ограничена ёмкостью.
+ */
+public class NegativeCache {
+    private static final Logger logger = LoggerFactory.getLogger(NegativeCache.class);
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final int capacity;
+    private final long ttlMillis;
+    private final long seed;
+    private final LinkedHashMap<String, Long> entries;
+    private final CoarseClock clock;
+
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+
+    public NegativeCache(int capacity, long ttlMinutes) {
+        this(capacity, ttlMinutes, CoarseClock.system());
+    }
+
+    public NegativeCache(int capacity, long ttlMinutes, CoarseClock clock) {
+        this.clock = clock;
+        this.capacity = capacity;
+        this.ttlMillis = ttlMinutes * 60 * 1000;
+        // Случайное зерно не даёт заранее подобрать имена, забивающие одни и те же биты
+        this.seed = new SecureRandom().nextLong();
+        this.entries = new LinkedHashMap<>(capacity, 0.75f, false);
+        this.current = new BloomFilter(capacity);
+        this.previous = new BloomFilter(capacity);
+
+        logger.info("NegativeCache initialized with capacity: {}, TTL: {} minutes", capacity, ttlMinutes);
+    }
+
+    /**
+     * Проверяет, известно ли, что город не существует
+     */
+    public boolean contains(String city) {
+        if (capacity <= 0 || city == null) {
+            return false;
+        }
+
+        String key = normalize(city);
+        long hash = hash(key);
+        if (!current.mightContain(hash) && !previous.mightContain(hash)) {
+            return false;
+        }
+
+        synchronized (entries) {
+            Long expiresAt = entries.get(key);
+            if (expiresAt == null) {
+                return false;
+            }
+            if (expiresAt <= clock.currentTimeMillis()) {
+                entries.remove(key);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    public void put(String city) {
+        if (capacity <= 0 || city == null) {
+            return;
+        }
+
+        String key = normalize(city);
+        synchronized (entries) {
+            entries.remove(key);
+            entries.put(key, clock.currentTimeMillis() + ttlMillis);
+            evictIfNeeded();
+
+            BloomFilter filter = current;
+            if (filter.isFull()) {
+                // Старое поколение отбрасывается: ложные срабатывания не растут при потоке случайных имён
+                previous = filter;
+                filter = new BloomFilter(capacity);
+                current = filter;
+                logger.debug("NegativeCache bloom filter rotated");
+            }
+            filter.add(hash(key));
+        }
+        logger.debug("Added to negative cache: {}", key);
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            current = new BloomFilter(capacity);
+            previous = new BloomFilter(capacity);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void evictIfNeeded() {
+        long now = clock.currentTimeMillis();
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            if (entries.size() <= capacity && eldest.getValue() > now) {
+                break;
+            }
+            iterator.remove();
+        }
+    }
+
+    private String normalize(String city) {
+        return city.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private long hash(String key) {
+        long h = seed;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        // Финальное перемешивание (splitmix64)
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * Фильтр Блума фиксированного размера на AtomicLongArray
+     */
+    private static final class BloomFilter {
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashCount;
+        private final int expectedInsertions;
+        private int insertions;
+
+        BloomFilter(int expectedInsertions) {
+            int n = Math.max(1, expectedInsertions);
+            long m = (long) Math.ceil(-n * Math.log(FALSE_POSITIVE_RATE) / (Math.log(2) * Math.log(2)));
+            int words = (int) Math.max(1, (m + 63) >>> 6);
+            this.bits = new AtomicLongArray(words);
+            this.bitCount = (long) words << 6;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+            this.expectedInsertions = n;
+        }
+
+        boolean mightContain(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long index = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long index = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                long value;
+                do {
+                    value = bits.get(word);
+                    if ((value & mask) != 0) {
+                        break;
+                    }
+                } while (!bits.compareAndSet(word, value, value | mask));
+            }
+            insertions++;
+        }
+
+        boolean isFull() {
+            return insertions >= expectedInsertions;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.weather.service;
+
+import com.weather.model.CityMetricValue;
+import com.weather.model.MetricAggregate;
+import com.weather.model.WeatherData;
+import com.weather.model.WeatherMetric;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Колоночный снимок наблюдений кэша для сводных запросов: по примитивному массиву на показатель,
+ * код страны и срок свежести, индекс строки - слот города.
+ * <p>
+ * Снимок обновляется кэшем при каждой записи, продлении и удалении, поэтому запросы не трогают
+ * записи кэша и не строят WeatherResponse. Освободившиеся слоты переиспользуются; пустой слот
+ * и устаревшая запись отсекаются сравнением срока свежести, так что запрос - это плоский проход
+ * по массивам без ветвлений на объекты. Страны хранятся номерами в словаре.
+ */
+final class ObservationColumns {
+    private static final WeatherMetric[] METRICS = WeatherMetric.values();
+    private static final int INITIAL_SLOTS = 64;
+    private static final short NO_COUNTRY = -1;
+
+    private final ReentrantReadWriteLock lock;
+    private final Map<String, Integer> slots;
+    private final Map<String, Short> countryIds;
+    private final List<String> countries;
+    private int[] freeSlots;
+    private int freeCount;
+    private int highWater;
+    private String[] keys;
+    private String[] names;
+    private double[][] values;
+    private short[] country;
+    private long[] freshUntil;
+
+    ObservationColumns() {
+        this.lock = new ReentrantReadWriteLock();
+        this.slots = new HashMap<>();
+        this.countryIds = new HashMap<>();
+        this.countries = new ArrayList<>();
+        allocate(INITIAL_SLOTS);
+    }
+
+    private void allocate(int capacity) {
+        this.freeSlots = new int[capacity];
+        this.freeCount = 0;
+        this.highWater = 0;
+        this.keys = new String[capacity];
+        this.names = new String[capacity];
+        this.values = new double[METRICS.length][capacity];
+        this.country = new short[capacity];
+        this.freshUntil = new long[capacity];
+    }
+
+    void update(String city, WeatherData data, long freshUntilMillis) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = slots.get(city);
+            int slot = existing != null ? existing : allocateSlot(city);
+            names[slot] = data.getName() != null ? data.getName() : city;
+            for (WeatherMetric metric : METRICS) {
+                values[metric.ordinal()][slot] = metric.extract(data);
+            }
+            country[slot] = countryId(data.getCountry());
+            freshUntil[slot] = freshUntilMillis;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void setFreshUntil(String city, long freshUntilMillis) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(city);
+            if (slot != null) {
+                freshUntil[slot] = freshUntilMillis;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String city) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.remove(city);
+            if (slot != null) {
+                keys[slot] = null;
+                names[slot] = null;
+                freshUntil[slot] = 0;
+                freeSlots[freeCount++] = slot;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            slots.clear();
+            allocate(INITIAL_SLOTS);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Сводка показателя по свежим записям; country == null - по всем странам
+     */
+    MetricAggregate aggregate(WeatherMetric metric, String countryCode, long nowMillis) {
+        lock.readLock().lock();
+        try {
+            short wanted = NO_COUNTRY;
+            if (countryCode != null) {
+                Short id = countryIds.get(countryCode.trim().toUpperCase(Locale.ROOT));
+                if (id == null) {
+                    return new MetricAggregate(countryCode, 0, Double.NaN, Double.NaN, Double.NaN);
+                }
+                wanted = id;
+            }
+            double[] column = values[metric.ordinal()];
+            int count = 0;
+            double sum = 0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < highWater; i++) {
+                double value = column[i];
+                if (freshUntil[i] > nowMillis && value == value && (wanted == NO_COUNTRY || country[i] == wanted)) {
+                    count++;
+                    sum += value;
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+            }
+            return count == 0
+                    ? new MetricAggregate(countryCode, 0, Double.NaN, Double.NaN, Double.NaN)
+                    : new MetricAggregate(countryCode, count, min, max, sum / count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Сводки показателя по странам за один проход; города без страны не учитываются.
+     * Порядок - по убыванию числа городов.
+     */
+    List<MetricAggregate> aggregateByCountry(WeatherMetric metric, long nowMillis) {
+        lock.readLock().lock();
+        try {
+            int groups = countries.size();
+            int[] counts = new int[groups];
+            double[] sums = new double[groups];
+            double[] mins = new double[groups];
+            double[] maxs = new double[groups];
+            Arrays.fill(mins, Double.POSITIVE_INFINITY);
+            Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+
+            double[] column = values[metric.ordinal()];
+            for (int i = 0; i < highWater; i++) {
+                double value = column[i];
+                int group = country[i];
+                if (freshUntil[i] > nowMillis && value == value && group >= 0) {
+                    counts[group]++;
+                    sums[group] += value;
+                    mins[group] = Math.min(mins[group], value);
+                    maxs[group] = Math.max(maxs[group], value);
+                }
+            }
+
+            List<MetricAggregate> result = new ArrayList<>();
+            for (int group = 0; group < groups; group++) {
+                if (counts[group] > 0) {
+                    result.add(new MetricAggregate(countries.get(group), counts[group], mins[group], maxs[group],
+                            sums[group] / counts[group]));
+                }
+            }
+            result.sort((a, b) -> Integer.compare(b.getCount(), a.getCount()));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * limit городов с наибольшим (highest) или наименьшим значением показателя среди свежих записей
+     */
+    List<CityMetricValue> top(WeatherMetric metric, int limit, boolean highest, long nowMillis) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            double sign = highest ? 1 : -1;
+            double[] column = values[metric.ordinal()];
+            // Лучшие limit значений по убыванию score, вставкой; большинство строк отсекается одним сравнением
+            double[] bestScores = new double[limit];
+            int[] bestSlots = new int[limit];
+            int filled = 0;
+            for (int i = 0; i < highWater; i++) {
+                double score = column[i] * sign;
+                if (freshUntil[i] <= nowMillis || score != score
+                        || (filled == limit && score <= bestScores[limit - 1])) {
+                    continue;
+                }
+                int position = filled < limit ? filled++ : limit - 1;
+                while (position > 0 && bestScores[position - 1] < score) {
+                    bestScores[position] = bestScores[position - 1];
+                    bestSlots[position] = bestSlots[position - 1];
+                    position--;
+                }
+                bestScores[position] = score;
+                bestSlots[position] = i;
+            }
+
+            List<CityMetricValue> result = new ArrayList<>(filled);
+            for (int n = 0; n < filled; n++) {
+                int slot = bestSlots[n];
+                result.add(new CityMetricValue(keys[slot], names[slot],
+                        country[slot] >= 0 ? countries.get(country[slot]) : null, column[slot]));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int allocateSlot(String city) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (highWater == keys.length) {
+                grow(keys.length * 2);
+            }
+            slot = highWater++;
+        }
+        keys[slot] = city;
+        slots.put(city, slot);
+        return slot;
+    }
+
+    private void grow(int capacity) {
+        freeSlots = Arrays.copyOf(freeSlots, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        names = Arrays.copyOf(names, capacity);
+        for (int m = 0; m < values.length; m++) {
+            values[m] = Arrays.copyOf(values[m], capacity);
+        }
+        country = Arrays.copyOf(country, capacity);
+        freshUntil = Arrays.copyOf(freshUntil, capacity);
+    }
+
+    private short countryId(String code) {
+        if (code == null || code.isEmpty()) {
+            return NO_COUNTRY;
+        }
+        Short id = countryIds.get(code);
+        if (id == null) {
+            if (countries.size() >= Short.MAX_VALUE) {
+                return NO_COUNTRY;
+            }
+            id = (short) countries.size();
+            countryIds.put(code, id);
+            countries.add(code);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,196 @@
+package com.weather.service;
+
+import com.weather.model.ObservationStats;
+import com.weather.model.WeatherData;
+import com.weather.model.WeatherMetric;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * История наблюдений по городам: кольцевой буфер фиксированного размера на город,
+ * по примитивному массиву на показатель. Новая точка добавляется, только если изменилось время
+ * наблюдения upstream (dt). Число городов ограничено бюджетом памяти; лишние вытесняются по LRU.
+ */
+public class ObservationHistory {
+    private static final Logger logger = LoggerFactory.getLogger(ObservationHistory.class);
+    private static final WeatherMetric[] METRICS = WeatherMetric.values();
+    // dt + значение каждого показателя
+    private static final int BYTES_PER_POINT = 8 + 8 * METRICS.length;
+
+    private final int pointsPerCity;
+    private final int maxCities;
+    private final LinkedHashMap<String, Ring> rings;
+    private final ReentrantLock lock;
+    private final CoarseClock clock;
+
+    public ObservationHistory(int pointsPerCity, long memoryBytes) {
+        this(pointsPerCity, memoryBytes, CoarseClock.system());
+    }
+
+    /**
+     * @param pointsPerCity число хранимых наблюдений на город; 0 - история выключена
+     * @param memoryBytes   бюджет памяти на всю историю
+     * @param clock         часы SDK, от которых отсчитывается окно сводки
+     */
+    public ObservationHistory(int pointsPerCity, long memoryBytes, CoarseClock clock) {
+        this.clock = clock;
+        this.pointsPerCity = Math.max(0, pointsPerCity);
+        this.maxCities = this.pointsPerCity == 0
+                ? 0
+                : (int) Math.min(Integer.MAX_VALUE, memoryBytes / ((long) this.pointsPerCity * BYTES_PER_POINT));
+        this.lock = new ReentrantLock();
+        this.rings = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Ring> eldest) {
+                return size() > maxCities;
+            }
+        };
+
+        if (isEnabled()) {
+            logger.info("ObservationHistory initialized: {} points per city, up to {} cities",
+                    this.pointsPerCity, maxCities);
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxCities > 0;
+    }
+
+    /**
+     * Добавляет наблюдение, если его dt отличается от последнего сохранённого
+     */
+    public void record(String city, WeatherData data) {
+        if (!isEnabled() || city == null || data == null || data.getDatetime() == null) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            Ring ring = rings.get(city);
+            if (ring == null) {
+                ring = new Ring(pointsPerCity);
+                rings.put(city, ring);
+            }
+            ring.append(data);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Сводка по показателю за последние windowSeconds секунд (по времени наблюдения upstream).
+     * Проход O(окно) по примитивным массивам; null, если наблюдений в окне нет.
+     */
+    public ObservationStats stats(String city, WeatherMetric metric, long windowSeconds) {
+        if (!isEnabled() || city == null) {
+            return null;
+        }
+
+        long since = clock.currentTimeMillis() / 1000 - windowSeconds;
+        lock.lock();
+        try {
+            Ring ring = rings.get(city);
+            return ring != null ? ring.stats(metric, since) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void remove(String city) {
+        lock.lock();
+        try {
+            rings.remove(city);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            rings.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return rings.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Ring {
+        final long[] datetimes;
+        final double[][] values;
+        int head; // индекс следующей записи
+        int count;
+
+        Ring(int capacity) {
+            this.datetimes = new long[capacity];
+            this.values = new double[METRICS.length][capacity];
+        }
+
+        void append(WeatherData data) {
+            long datetime = data.getDatetime();
+            if (count > 0 && datetimes[previous(head)] == datetime) {
+                return;
+            }
+            datetimes[head] = datetime;
+            for (int m = 0; m < METRICS.length; m++) {
+                values[m][head] = METRICS[m].extract(data);
+            }
+            head = (head + 1) % datetimes.length;
+            if (count < datetimes.length) {
+                count++;
+            }
+        }
+
+        ObservationStats stats(WeatherMetric metric, long since) {
+            double[] column = values[metric.ordinal()];
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double sum = 0;
+            double newest = Double.NaN;
+            double oldest = Double.NaN;
+            int used = 0;
+
+            // От новых к старым, пока наблюдения попадают в окно
+            int index = head;
+            for (int i = 0; i < count; i++) {
+                index = previous(index);
+                if (datetimes[index] < since) {
+                    break;
+                }
+                double value = column[index];
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                if (used == 0) {
+                    newest = value;
+                }
+                oldest = value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                sum += value;
+                used++;
+            }
+
+            if (used == 0) {
+                return null;
+            }
+            return new ObservationStats(metric, used, min, max, sum / used, newest - oldest);
+        }
+
+        private int previous(int index) {
+            return index == 0 ? datetimes.length - 1 : index - 1;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.weather.service;
+
+import com.weather.model.WeatherData;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Расписание опроса по городам по наблюдаемому ритму обновлений upstream.
+ * <p>
+ * Интервал между сменами dt сглаживается по городу; следующий опрос ставится чуть позже
+ * ожидаемого нового наблюдения. Если наблюдение не изменилось, повтор через четверть интервала.
+ * Интервал всегда лежит в пределах [minIntervalMillis, maxIntervalMillis].
+ */
+final class PollSchedule {
+    // Upstream публикует наблюдение с задержкой относительно его dt
+    private static final long PUBLISH_GRACE_MILLIS = 60_000;
+
+    private final long minIntervalMillis;
+    private volatile long initialCadenceMillis;
+    private volatile long maxIntervalMillis;
+    private final ConcurrentHashMap<String, State> states;
+
+    PollSchedule(long initialCadenceMillis, long minIntervalMillis, long maxIntervalMillis) {
+        this.minIntervalMillis = Math.max(1, minIntervalMillis);
+        this.maxIntervalMillis = Math.max(this.minIntervalMillis, maxIntervalMillis);
+        this.initialCadenceMillis = clamp(initialCadenceMillis);
+        this.states = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Город, которого ещё нет в расписании, впервые опрашивается через начальный интервал
+     */
+    boolean isDue(String city, long nowMillis) {
+        State state = states.computeIfAbsent(city, key -> new State(initialCadenceMillis, nowMillis));
+        return nowMillis >= state.nextPollAt;
+    }
+
+    /**
+     * Учитывает результат опроса и ставит следующий
+     *
+     * @return true, если upstream выдал новое наблюдение (dt изменился)
+     */
+    boolean record(String city, WeatherData fresh, long nowMillis) {
+        State state = states.computeIfAbsent(city, key -> new State(initialCadenceMillis, nowMillis));
+        synchronized (state) {
+            Long datetime = fresh != null ? fresh.getDatetime() : null;
+            if (datetime == null) {
+                state.nextPollAt = nowMillis + state.cadenceMillis;
+                return true;
+            }
+            if (datetime == state.lastDatetime) {
+                state.nextPollAt = nowMillis + clamp(state.cadenceMillis / 4);
+                return false;
+            }
+
+            if (state.lastDatetime > 0 && datetime > state.lastDatetime) {
+                long observed = (datetime - state.lastDatetime) * 1000;
+                state.cadenceMillis = clamp((state.cadenceMillis + observed) / 2);
+            }
+            state.lastDatetime = datetime;
+            long expected = datetime * 1000 + state.cadenceMillis + PUBLISH_GRACE_MILLIS;
+            state.nextPollAt = Math.min(nowMillis + maxIntervalMillis, Math.max(nowMillis + minIntervalMillis, expected));
+            return true;
+        }
+    }
+
+    /**
+     * Неудачный опрос повторяется не раньше минимального интервала
+     */
+    void recordFailure(String city, long nowMillis) {
+        State state = states.get(city);
+        if (state != null) {
+            synchronized (state) {
+                state.nextPollAt = nowMillis + clamp(state.cadenceMillis / 4);
+            }
+        }
+    }
+
+    /**
+     * Новые пределы интервала. Накопленный ритм городов сохраняется, но приводится к новым пределам,
+     * а опрос, назначенный позже нового максимума, переносится ближе.
+     */
+    void reconfigure(long initialCadenceMillis, long maxIntervalMillis, long nowMillis) {
+        this.maxIntervalMillis = Math.max(minIntervalMillis, maxIntervalMillis);
+        this.initialCadenceMillis = clamp(initialCadenceMillis);
+        for (State state : states.values()) {
+            synchronized (state) {
+                state.cadenceMillis = clamp(state.cadenceMillis);
+                state.nextPollAt = Math.min(state.nextPollAt, nowMillis + this.maxIntervalMillis);
+            }
+        }
+    }
+
+    void remove(String city) {
+        states.remove(city);
+    }
+
+    void clear() {
+        states.clear();
+    }
+
+    long getCadenceMillis(String city) {
+        State state = states.get(city);
+        return state != null ? state.cadenceMillis : initialCadenceMillis;
+    }
+
+    private long clamp(long intervalMillis) {
+        return Math.max(minIntervalMillis, Math.min(maxIntervalMillis, intervalMillis));
+    }
+
+    private static final class State {
+        long lastDatetime;
+        long cadenceMillis;
+        volatile long nextPollAt;
+
+        State(long cadenceMillis, long nowMillis) {
+            this.cadenceMillis = cadenceMillis;
+            this.nextPollAt = nowMillis + cadenceMillis;
+        }
+    }
+}
@@ -1,45 +1,103 @@
 package com.weather.service;
 
+import com.weather.model.WeatherData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Опрос закэшированных городов. Каждый город обновляется по своему расписанию (PollSchedule):
+ * вскоре после ожидаемого нового наблюдения upstream, но не реже maxIntervalMinutes.
+ * Планировщик лишь раз в TICK_SECONDS проверяет, каким городам пора обновиться.
+ */
 public class PollingService {
     private static final Logger logger = LoggerFactory.getLogger(PollingService.class);
+    private static final long TICK_SECONDS = 30;
+    private static final long MIN_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
 
     private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final Executor refreshExecutor;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
     private final WeatherProvider weatherProvider;
-    private final long intervalMinutes;
+    private volatile long intervalMinutes;
+    private final PollSchedule schedule;
+    private final CoarseClock clock;
     private volatile boolean isRunning = false;
+    private ScheduledFuture<?> task;
 
     public PollingService(WeatherProvider weatherProvider, long intervalMinutes) {
-        this.weatherProvider = weatherProvider;
-        this.intervalMinutes = intervalMinutes;
-        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        this(weatherProvider, intervalMinutes, Executors.newSingleThreadScheduledExecutor(r -> {
             Thread thread = new Thread(r, "WeatherPollingService");
             thread.setDaemon(true);
             return thread;
-        });
+        }), true, Runnable::run, intervalMinutes, CoarseClock.system());
     }
 
+    /**
+     * Сервис опроса на общем планировщике: остановка отменяет только свою задачу.
+     * Сам опрос с блокирующими запросами выполняется в refreshExecutor, чтобы не занимать потоки планировщика.
+     */
+    public PollingService(WeatherProvider weatherProvider, long intervalMinutes,
+                          ScheduledExecutorService scheduler, Executor refreshExecutor) {
+        this(weatherProvider, intervalMinutes, scheduler, false, refreshExecutor, intervalMinutes,
+                CoarseClock.system());
+    }
+
+    /**
+     * @param intervalMinutes    начальный интервал опроса города, пока ритм upstream не известен
+     * @param maxIntervalMinutes предельный интервал; не должен превышать TTL кэша, иначе город истечёт до опроса
+     */
+    public PollingService(WeatherProvider weatherProvider, long intervalMinutes, long maxIntervalMinutes,
+                          ScheduledExecutorService scheduler, Executor refreshExecutor) {
+        this(weatherProvider, intervalMinutes, maxIntervalMinutes, scheduler, refreshExecutor, CoarseClock.system());
+    }
 
-    public void start() {
+    /**
+     * @param clock часы SDK: по ним считается расписание городов, а период проверки сжимается вместе с ними
+     */
+    public PollingService(WeatherProvider weatherProvider, long intervalMinutes, long maxIntervalMinutes,
+                          ScheduledExecutorService scheduler, Executor refreshExecutor, CoarseClock clock) {
+        this(weatherProvider, intervalMinutes, scheduler, false, refreshExecutor, maxIntervalMinutes, clock);
+    }
+
+    private PollingService(WeatherProvider weatherProvider, long intervalMinutes,
+                           ScheduledExecutorService scheduler, boolean ownsScheduler, Executor refreshExecutor,
+                           long maxIntervalMinutes, CoarseClock clock) {
+        this.weatherProvider = weatherProvider;
+        this.clock = clock;
+        this.intervalMinutes = intervalMinutes;
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+        this.refreshExecutor = refreshExecutor;
+        this.schedule = new PollSchedule(TimeUnit.MINUTES.toMillis(intervalMinutes), MIN_INTERVAL_MILLIS,
+                TimeUnit.MINUTES.toMillis(maxIntervalMinutes));
+        // Город ушёл из кэша - его расписание больше не нужно
+        weatherProvider.addCacheEvictionListener((city, data, cause) -> schedule.remove(city));
+    }
+
+
+    public synchronized void start() {
         if (isRunning) {
             logger.warn("Polling service is already running");
             return;
         }
 
-        logger.info("Starting polling service with interval: {} minutes", intervalMinutes);
+        logger.info("Starting polling service with initial interval: {} minutes", intervalMinutes);
         isRunning = true;
 
-        scheduler.scheduleAtFixedRate(this::updateAllCachedData, 0, intervalMinutes, TimeUnit.MINUTES);
+        long tickMillis = clock.toRealMillis(TimeUnit.SECONDS.toMillis(TICK_SECONDS));
+        task = scheduler.scheduleAtFixedRate(this::submitUpdate, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
     }
 
 
-    public void stop() {
+    public synchronized void stop() {
         if (!isRunning) {
             logger.warn("Polling service is not running");
             return;
@@ -47,8 +105,14 @@ public class PollingService {
 
         logger.info("Stopping polling service");
         isRunning = false;
-        scheduler.shutdown();
+        task.cancel(false);
+        schedule.clear();
 
+        if (!ownsScheduler) {
+            return;
+        }
+
+        scheduler.shutdown();
         try {
             if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
                 scheduler.shutdownNow();
@@ -60,18 +124,77 @@ public class PollingService {
     }
 
 
+    private void submitUpdate() {
+        // Следующий цикл не запускается, пока не закончился предыдущий
+        if (!refreshing.compareAndSet(false, true)) {
+            logger.debug("Previous cache update is still running, skipping this cycle");
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    updateAllCachedData();
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.set(false);
+            logger.error("Failed to submit scheduled cache update", e);
+        }
+    }
+
     private void updateAllCachedData() {
         try {
-            logger.debug("Starting scheduled cache update");
-            weatherProvider.updateAllCachedData();
-            logger.debug("Completed scheduled cache update");
+            refreshDueCities();
         } catch (Exception e) {
             logger.error("Error during scheduled cache update", e);
             // Не пробрасываем исключение, чтобы сервис продолжал работать
         }
     }
 
+    private void refreshDueCities() {
+        int changed = 0;
+        int unchanged = 0;
+        int failed = 0;
+
+        for (String city : weatherProvider.getCachedCities()) {
+            long now = clock.currentTimeMillis();
+            if (!isRunning || !schedule.isDue(city, now)) {
+                continue;
+            }
+            try {
+                WeatherData fresh = weatherProvider.refreshCachedCity(city);
+                if (schedule.record(city, fresh, now)) {
+                    changed++;
+                } else {
+                    unchanged++;
+                }
+            } catch (Exception e) {
+                failed++;
+                schedule.recordFailure(city, now);
+                logger.warn("Failed to update data for city: {}, error: {}", city, e.getMessage());
+            }
+        }
+
+        if (changed + unchanged + failed > 0) {
+            logger.info("Cache update completed: {} changed, {} unchanged, {} failed", changed, unchanged, failed);
+        }
+    }
+
+    /**
+     * Меняет интервалы опроса на ходу; расписание городов не сбрасывается
+     *
+     * @param maxIntervalMinutes предельный интервал, как в конструкторе
+     */
+    public void setIntervals(long intervalMinutes, long maxIntervalMinutes) {
+        this.intervalMinutes = intervalMinutes;
+        schedule.reconfigure(TimeUnit.MINUTES.toMillis(intervalMinutes), TimeUnit.MINUTES.toMillis(maxIntervalMinutes),
+                clock.currentTimeMillis());
+        logger.info("Polling interval set to {} minutes (max {} minutes)", intervalMinutes, maxIntervalMinutes);
+    }
+
     public boolean isRunning() {
         return isRunning;
     }
-}
\ No newline at end of file
+}
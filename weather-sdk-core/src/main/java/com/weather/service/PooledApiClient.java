@@ -0,0 +1,261 @@
+package com.weather.service;
+
+import com.weather.exception.ApiCallLimitExceededException;
+import com.weather.exception.InvalidApiKeyException;
+import com.weather.model.ApiKeyStatus;
+import com.weather.model.ForecastData;
+import com.weather.model.WeatherData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Клиент поверх пула ключей API. Каждый запрос уходит ключу с наибольшим остатком бюджета
+ * в текущем минутном окне. Ключ, получивший 401 или 429, помещается в карантин, а запрос
+ * повторяется на следующем ключе. Если доступных ключей нет, запрос к API не выполняется.
+ */
+public class PooledApiClient extends ApiClient {
+    private static final Logger logger = LoggerFactory.getLogger(PooledApiClient.class);
+    private static final long WINDOW_MILLIS = 60_000;
+
+    private final List<KeySlot> slots;
+    private final int callsPerMinute;
+    private final long invalidKeyQuarantineMillis;
+    private final ReentrantLock lock;
+
+    /**
+     * @param callsPerMinute             бюджет одного ключа на минуту
+     * @param invalidKeyQuarantineMillis карантин ключа после 401; после 429 ключ ждёт конца окна
+     */
+    public PooledApiClient(List<String> apiKeys, String baseUrl, HttpClient httpClient,
+                           int callsPerMinute, long invalidKeyQuarantineMillis) {
+        super(requireKeys(apiKeys).get(0), baseUrl, httpClient);
+        this.callsPerMinute = Math.max(1, callsPerMinute);
+        this.invalidKeyQuarantineMillis = invalidKeyQuarantineMillis;
+        this.lock = new ReentrantLock();
+        this.slots = new ArrayList<>(apiKeys.size());
+        for (String apiKey : apiKeys) {
+            slots.add(new KeySlot(apiKey, new ApiClient(apiKey, baseUrl, httpClient)));
+        }
+        logger.info("PooledApiClient initialized with {} keys, {} calls per minute each", slots.size(), callsPerMinute);
+    }
+
+    @Override
+    public WeatherData getWeatherData(String cityName) {
+        return execute(client -> client.getWeatherData(cityName));
+    }
+
+    @Override
+    public WeatherData getWeatherDataById(long cityId) {
+        return execute(client -> client.getWeatherDataById(cityId));
+    }
+
+    @Override
+    public CompletableFuture<WeatherData> getWeatherDataAsync(String cityName, Duration timeout) {
+        CompletableFuture<WeatherData> result = new CompletableFuture<>();
+        executeAsync(client -> client.getWeatherDataAsync(cityName, timeout), 0, null, result);
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<WeatherData> getWeatherDataByIdAsync(long cityId, Duration timeout) {
+        CompletableFuture<WeatherData> result = new CompletableFuture<>();
+        executeAsync(client -> client.getWeatherDataByIdAsync(cityId, timeout), 0, null, result);
+        return result;
+    }
+
+    @Override
+    public ForecastData getForecastData(String cityName, CoarseClock clock) {
+        return execute(client -> client.getForecastData(cityName, clock));
+    }
+
+    @Override
+    public List<ApiKeyStatus> getKeyStatus() {
+        long now = System.currentTimeMillis();
+        List<ApiKeyStatus> status = new ArrayList<>(slots.size());
+        lock.lock();
+        try {
+            for (KeySlot slot : slots) {
+                slot.rollWindow(now);
+                status.add(new ApiKeyStatus(mask(slot.apiKey), slot.calls, Math.max(0, callsPerMinute - slot.calls),
+                        Math.max(0, slot.quarantinedUntil - now)));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return status;
+    }
+
+    /**
+     * Выполняет запрос, перебирая ключи по убыванию остатка бюджета, пока ключ не ответит
+     */
+    private <T> T execute(Function<ApiClient, T> call) {
+        RuntimeException lastKeyError = null;
+        for (int attempt = 0; attempt < slots.size(); attempt++) {
+            KeySlot slot = acquire();
+            if (slot == null) {
+                break;
+            }
+            try {
+                return call.apply(slot.client);
+            } catch (InvalidApiKeyException e) {
+                quarantine(slot, true);
+                lastKeyError = e;
+            } catch (ApiCallLimitExceededException e) {
+                quarantine(slot, false);
+                lastKeyError = e;
+            }
+        }
+
+        throw exhausted(lastKeyError);
+    }
+
+    /**
+     * Асинхронный вариант execute: следующий ключ пробуется, когда предыдущий ответил 401 или 429.
+     * Отмена result отменяет текущий HTTP-запрос.
+     */
+    private void executeAsync(Function<ApiClient, CompletableFuture<WeatherData>> call, int attempt,
+                              RuntimeException lastKeyError, CompletableFuture<WeatherData> result) {
+        KeySlot slot = attempt < slots.size() ? acquire() : null;
+        if (slot == null) {
+            result.completeExceptionally(exhausted(lastKeyError));
+            return;
+        }
+        CompletableFuture<WeatherData> exchange = call.apply(slot.client);
+        result.whenComplete((data, error) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        exchange.whenComplete((data, error) -> {
+            if (error == null) {
+                result.complete(data);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof InvalidApiKeyException || cause instanceof ApiCallLimitExceededException) {
+                quarantine(slot, cause instanceof InvalidApiKeyException);
+                if (!result.isDone()) {
+                    executeAsync(call, attempt + 1, (RuntimeException) cause, result);
+                }
+            } else {
+                result.completeExceptionally(cause);
+            }
+        });
+    }
+
+    private RuntimeException exhausted(RuntimeException lastKeyError) {
+        if (lastKeyError != null && allQuarantinedForInvalidKey()) {
+            return new InvalidApiKeyException(lastKeyError);
+        }
+        logger.warn("No API key in the pool has budget left");
+        return lastKeyError != null ? new ApiCallLimitExceededException(lastKeyError) : new ApiCallLimitExceededException();
+    }
+
+    /**
+     * Ключ вне карантина с наибольшим остатком бюджета; запрос сразу засчитывается ключу
+     */
+    private KeySlot acquire() {
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            KeySlot best = null;
+            for (KeySlot slot : slots) {
+                slot.rollWindow(now);
+                if (slot.quarantinedUntil > now || slot.calls >= callsPerMinute) {
+                    continue;
+                }
+                if (best == null || slot.calls < best.calls) {
+                    best = slot;
+                }
+            }
+            if (best != null) {
+                best.calls++;
+            }
+            return best;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Неверный ключ уходит в карантин на invalidKeyQuarantineMillis, исчерпавший лимит - до конца окна
+     */
+    private void quarantine(KeySlot slot, boolean invalidKey) {
+        long now = System.currentTimeMillis();
+        long until;
+        lock.lock();
+        try {
+            until = invalidKey ? now + invalidKeyQuarantineMillis : slot.windowStart + WINDOW_MILLIS;
+            slot.quarantinedUntil = Math.max(slot.quarantinedUntil, until);
+            slot.invalid = invalidKey;
+        } finally {
+            lock.unlock();
+        }
+        logger.warn("API key {} quarantined for {} ms: {}", mask(slot.apiKey), Math.max(0, until - now),
+                invalidKey ? "invalid key" : "call limit exceeded");
+    }
+
+    private boolean allQuarantinedForInvalidKey() {
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            for (KeySlot slot : slots) {
+                if (!slot.invalid || slot.quarantinedUntil <= now) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getKeyCount() {
+        return slots.size();
+    }
+
+    private static List<String> requireKeys(List<String> apiKeys) {
+        if (apiKeys == null || apiKeys.isEmpty()) {
+            throw new IllegalArgumentException("API key pool cannot be empty");
+        }
+        return apiKeys;
+    }
+
+    private static String mask(String apiKey) {
+        if (apiKey == null || apiKey.length() <= 8) {
+            return "***";
+        }
+        return apiKey.substring(0, 4) + "..." + apiKey.substring(apiKey.length() - 4);
+    }
+
+    private static final class KeySlot {
+        final String apiKey;
+        final ApiClient client;
+        long windowStart;
+        int calls;
+        long quarantinedUntil;
+        boolean invalid;
+
+        KeySlot(String apiKey, ApiClient client) {
+            this.apiKey = apiKey;
+            this.client = client;
+        }
+
+        // Фиксированное минутное окно, как у лимита OpenWeatherMap
+        void rollWindow(long now) {
+            if (now - windowStart >= WINDOW_MILLIS) {
+                windowStart = now - (now % WINDOW_MILLIS);
+                calls = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.weather.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Затухающая статистика самых запрашиваемых городов для прогрева кэша после перезапуска.
+ * <p>
+ * Отслеживается не больше TRACKED_PER_TOP * topCount городов; при переполнении новый город
+ * вытесняет наименее популярный. После sampleSize обращений все счётчики делятся пополам,
+ * поэтому давняя популярность затухает. Состояние можно сохранить в файл и прочитать при старте.
+ */
+public class PopularCities {
+    private static final Logger logger = LoggerFactory.getLogger(PopularCities.class);
+    private static final int TRACKED_PER_TOP = 4;
+
+    private final int topCount;
+    private final int maxTracked;
+    private final int sampleSize;
+    private final HashMap<String, Counter> counters;
+    private final ReentrantLock lock;
+    private long recorded;
+
+    /**
+     * @param topCount сколько городов отдавать для прогрева; 0 - учёт выключен
+     */
+    public PopularCities(int topCount) {
+        this.topCount = Math.max(0, topCount);
+        this.maxTracked = Math.max(16, TRACKED_PER_TOP * this.topCount);
+        this.sampleSize = 10 * maxTracked;
+        this.counters = new HashMap<>();
+        this.lock = new ReentrantLock();
+    }
+
+    public boolean isEnabled() {
+        return topCount > 0;
+    }
+
+    public int getTopCount() {
+        return topCount;
+    }
+
+    /**
+     * Учитывает обращение к городу. Вызывается с пути промаха: блокировка общая для провайдеров,
+     * а новый город создаёт счётчик, поэтому путь попадания сюда не ходит.
+     */
+    public void record(String city) {
+        record(city, 1);
+    }
+
+    /**
+     * Учитывает weight обращений сразу, например попадания в кэш провайдера за период
+     */
+    public void record(String city, long weight) {
+        if (!isEnabled() || city == null || weight <= 0) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            Counter counter = counters.get(city);
+            if (counter == null) {
+                if (counters.size() >= maxTracked) {
+                    evictLeastPopular();
+                }
+                counter = new Counter();
+                counters.put(city, counter);
+            }
+            counter.count += weight;
+            recorded += weight;
+            if (recorded >= sampleSize) {
+                decay();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * До topCount самых популярных городов по убыванию счётчика
+     */
+    public List<String> topCities() {
+        if (!isEnabled()) {
+            return List.of();
+        }
+
+        List<Map.Entry<String, Long>> entries;
+        lock.lock();
+        try {
+            entries = new ArrayList<>(counters.size());
+            for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+                entries.add(Map.entry(entry.getKey(), entry.getValue().count));
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        List<String> top = new ArrayList<>(Math.min(topCount, entries.size()));
+        for (int i = 0; i < entries.size() && i < topCount; i++) {
+            top.add(entries.get(i).getKey());
+        }
+        return top;
+    }
+
+    /**
+     * Читает сохранённое состояние: строки вида "счётчик\tгород". Отсутствующий файл не ошибка.
+     */
+    public void load(Path file) {
+        if (!isEnabled() || file == null || !Files.exists(file)) {
+            return;
+        }
+
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            lock.lock();
+            try {
+                for (String line : lines) {
+                    int tab = line.indexOf('\t');
+                    if (tab <= 0 || tab == line.length() - 1 || counters.size() >= maxTracked) {
+                        continue;
+                    }
+                    try {
+                        counters.put(line.substring(tab + 1), new Counter(Long.parseLong(line.substring(0, tab))));
+                    } catch (NumberFormatException e) {
+                        logger.warn("Ignoring malformed popular city line: {}", line);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            logger.info("Loaded {} popular cities from {}", lines.size(), file);
+        } catch (IOException e) {
+            logger.warn("Failed to load popular cities from {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Сохраняет отслеживаемые города через временный файл, чтобы не оставить файл недописанным
+     */
+    public void save(Path file) {
+        if (!isEnabled() || file == null) {
+            return;
+        }
+
+        List<String> lines = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+                lines.add(entry.getValue().count + "\t" + entry.getKey());
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.debug("Saved {} popular cities to {}", lines.size(), file);
+        } catch (IOException e) {
+            logger.warn("Failed to save popular cities to {}: {}", file, e.getMessage());
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return counters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evictLeastPopular() {
+        String victim = null;
+        long min = Long.MAX_VALUE;
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            if (entry.getValue().count < min) {
+                min = entry.getValue().count;
+                victim = entry.getKey();
+            }
+        }
+        counters.remove(victim);
+    }
+
+    private void decay() {
+        recorded = 0;
+        Iterator<Counter> iterator = counters.values().iterator();
+        while (iterator.hasNext()) {
+            Counter counter = iterator.next();
+            counter.count >>>= 1;
+            if (counter.count == 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class Counter {
+        long count;
+
+        Counter() {
+        }
+
+        Counter(long count) {
+            this.count = count;
+        }
+    }
+}
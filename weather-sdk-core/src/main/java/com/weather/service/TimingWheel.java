@@ -0,0 +1,185 @@
+package com.weather.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Иерархическое колесо таймеров для истечения записей кэша.
+ * <p>
+ * Четыре уровня по 64 слота: тик, 64 тика, 64^2 и 64^3 тика. Постановка и отмена - O(1)
+ * через двусвязные списки слотов; продвижение на тик разбирает один слот нижнего уровня,
+ * а раз в 64 тика переносит слот следующего уровня вниз. Не потокобезопасно: вызывается под блокировкой кэша.
+ */
+final class TimingWheel<K> {
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long MAX_DELTA_TICKS = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+    private final Node<K>[][] wheel;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+        this.wheel = new Node[LEVELS][SLOTS];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                wheel[level][slot] = Node.sentinel();
+            }
+        }
+    }
+
+    Node<K> schedule(K key, long deadlineMillis) {
+        Node<K> node = new Node<>(key, deadlineMillis);
+        link(node);
+        size++;
+        return node;
+    }
+
+    /**
+     * Переносит узел на новый срок без создания объектов
+     */
+    void reschedule(Node<K> node, long deadlineMillis) {
+        if (node.isLinked()) {
+            node.unlink();
+            node.deadline = deadlineMillis;
+            link(node);
+        }
+    }
+
+    void cancel(Node<K> node) {
+        if (node.isLinked()) {
+            node.unlink();
+            size--;
+        }
+    }
+
+    /**
+     * Продвигает колесо до nowMillis и отдаёт ключи истёкших узлов; узел отвязан до вызова expired
+     */
+    void advance(long nowMillis, Consumer<K> expired) {
+        long targetTick = nowMillis / tickMillis;
+        if (targetTick - currentTick > SLOTS) {
+            // Долгая пауза: проще заново разложить все узлы, чем проходить каждый тик
+            currentTick = targetTick;
+            rescan(nowMillis, expired);
+            return;
+        }
+
+        while (currentTick < targetTick) {
+            currentTick++;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                long levelTicks = 1L << (SLOT_BITS * level);
+                if ((currentTick & (levelTicks - 1)) == 0) {
+                    cascade(wheel[level][(int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK)], nowMillis, expired);
+                }
+            }
+            cascade(wheel[0][(int) (currentTick & SLOT_MASK)], nowMillis, expired);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        for (Node<K>[] level : wheel) {
+            for (Node<K> sentinel : level) {
+                while (sentinel.next != sentinel) {
+                    sentinel.next.unlink();
+                }
+            }
+        }
+        size = 0;
+    }
+
+    private void rescan(long nowMillis, Consumer<K> expired) {
+        for (Node<K>[] level : wheel) {
+            for (Node<K> sentinel : level) {
+                cascade(sentinel, nowMillis, expired);
+            }
+        }
+    }
+
+    /**
+     * Снимает все узлы слота: истёкшие отдаются наружу, остальные раскладываются заново
+     */
+    private void cascade(Node<K> sentinel, long nowMillis, Consumer<K> expired) {
+        Node<K> node = sentinel.next;
+        sentinel.next = sentinel;
+        sentinel.prev = sentinel;
+        while (node != sentinel) {
+            Node<K> next = node.next;
+            node.next = null;
+            node.prev = null;
+            if (node.deadline <= nowMillis) {
+                size--;
+                expired.accept(node.key);
+            } else {
+                link(node);
+            }
+            node = next;
+        }
+    }
+
+    private void link(Node<K> node) {
+        long ticks = node.deadline / tickMillis;
+        long delta = ticks - currentTick;
+        if (delta <= 0) {
+            // Срок уже в текущем тике: слот текущего тика разобран, ставим на следующий
+            ticks = currentTick + 1;
+            delta = 1;
+        } else if (delta > MAX_DELTA_TICKS) {
+            ticks = currentTick + MAX_DELTA_TICKS;
+            delta = MAX_DELTA_TICKS;
+        }
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        Node<K> sentinel = wheel[level][(int) ((ticks >>> (SLOT_BITS * level)) & SLOT_MASK)];
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+    }
+
+    static final class Node<K> {
+        final K key;
+        long deadline;
+        Node<K> prev;
+        Node<K> next;
+
+        private Node(K key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+
+        private static <K> Node<K> sentinel() {
+            Node<K> sentinel = new Node<>(null, Long.MAX_VALUE);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            return sentinel;
+        }
+
+        long getDeadline() {
+            return deadline;
+        }
+
+        private boolean isLinked() {
+            return next != null;
+        }
+
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = null;
+            next = null;
+        }
+    }
+}
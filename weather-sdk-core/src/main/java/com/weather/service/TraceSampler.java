@@ -0,0 +1,34 @@
+package com.weather.service;
+
+/**
+ * Выборочная трассировка горячего пути: разрешает запись в лог каждого N-го события.
+ * <p>
+ * Счётчик намеренно не атомарный: гонки лишь немного сдвигают выборку,
+ * зато проверка не создаёт объектов и не делит кэш-линию между потоками через CAS.
+ */
+public final class TraceSampler {
+    private final int rate;
+    private int counter;
+
+    /**
+     * @param rate записывать каждое rate-е событие; 0 или меньше - трассировка выключена
+     */
+    public TraceSampler(int rate) {
+        this.rate = rate;
+    }
+
+    public boolean sample() {
+        if (rate <= 0) {
+            return false;
+        }
+        if (++counter >= rate) {
+            counter = 0;
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isEnabled() {
+        return rate > 0;
+    }
+}
@@ -0,0 +1,338 @@
+package com.weather.service;
+
+import com.weather.exception.WeatherSDKException;
+import com.weather.model.UpstreamLaneStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Общий для всех провайдеров диспетчер запросов к API с двумя полосами приоритета.
+ * <p>
+ * Одновременно выполняется не больше maxConcurrent запросов. Промахи кэша у пользователей (INTERACTIVE)
+ * занимают освободившееся место раньше опроса и прогрева (BACKGROUND), а одно место всегда оставлено
+ * за интерактивными. Число фоновых запросов ограничено адаптивным пределом: он уменьшается вдвое, когда
+ * интерактивный запрос встаёт в очередь или сглаженная задержка интерактивных запросов превышает цель,
+ * и растёт на единицу с каждым фоновым запросом, завершённым без такого давления.
+ */
+public final class UpstreamDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamDispatcher.class);
+    // Вес нового измерения в сглаженной задержке интерактивных запросов
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    public enum Priority {
+        INTERACTIVE, BACKGROUND
+    }
+
+    private final int maxConcurrent;
+    private final int maxBackground;
+    private final long latencyTargetNanos;
+    private final ReentrantLock lock;
+    private final Lane interactive;
+    private final Lane background;
+    private int inFlight;
+    private int backgroundLimit;
+    private double interactiveLatencyNanos;
+    private long throttleCount;
+
+    /**
+     * @param maxConcurrent           предел одновременных запросов к API
+     * @param latencyTargetMillis     цель по задержке интерактивного запроса, включая ожидание в очереди
+     */
+    public UpstreamDispatcher(int maxConcurrent, long latencyTargetMillis) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxBackground = Math.max(1, this.maxConcurrent - 1);
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, latencyTargetMillis));
+        this.lock = new ReentrantLock();
+        this.interactive = new Lane(Priority.INTERACTIVE);
+        this.background = new Lane(Priority.BACKGROUND);
+        this.backgroundLimit = maxBackground;
+        logger.info("UpstreamDispatcher initialized: {} concurrent calls, interactive latency target {} ms",
+                this.maxConcurrent, latencyTargetMillis);
+    }
+
+    /**
+     * Выполняет блокирующий запрос, дождавшись места в своей полосе
+     */
+    public <T> T execute(Priority priority, Supplier<T> call) {
+        Ticket ticket = enqueue(priority);
+        try {
+            ticket.gate.get();
+        } catch (InterruptedException e) {
+            if (!abandon(ticket)) {
+                release(ticket, false);
+            }
+            Thread.currentThread().interrupt();
+            throw new WeatherSDKException("Interrupted while waiting for upstream capacity", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+
+        boolean success = false;
+        try {
+            T result = call.get();
+            success = true;
+            return result;
+        } finally {
+            release(ticket, success);
+        }
+    }
+
+    /**
+     * Асинхронный вариант: call вызывается, когда для запроса освободилось место.
+     * Отмена результата снимает запрос с очереди или отменяет уже начатый.
+     */
+    public <T> CompletableFuture<T> executeAsync(Priority priority, Supplier<CompletableFuture<T>> call) {
+        Ticket ticket = enqueue(priority);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                abandon(ticket);
+            }
+        });
+        ticket.gate.thenRun(() -> {
+            if (result.isDone()) {
+                release(ticket, false);
+                return;
+            }
+            CompletableFuture<T> started;
+            try {
+                started = call.get();
+            } catch (RuntimeException e) {
+                release(ticket, false);
+                result.completeExceptionally(e);
+                return;
+            }
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) {
+                    started.cancel(true);
+                }
+            });
+            started.whenComplete((value, error) -> {
+                release(ticket, error == null);
+                if (error == null) {
+                    result.complete(value);
+                } else {
+                    result.completeExceptionally(
+                            error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                }
+            });
+        });
+        return result;
+    }
+
+    private Ticket enqueue(Priority priority) {
+        Ticket ticket = new Ticket(priority, System.nanoTime());
+        boolean granted;
+        lock.lock();
+        try {
+            Lane lane = lane(priority);
+            granted = lane.queue.isEmpty() && canStart(priority);
+            if (granted) {
+                start(ticket, ticket.enqueuedAt);
+            } else {
+                lane.queue.addLast(ticket);
+                if (priority == Priority.INTERACTIVE) {
+                    throttle();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (granted) {
+            ticket.gate.complete(null);
+        }
+        return ticket;
+    }
+
+    /**
+     * Снимает запрос с очереди; false, если место ему уже выдано
+     */
+    private boolean abandon(Ticket ticket) {
+        lock.lock();
+        try {
+            if (ticket.state != Ticket.QUEUED) {
+                return false;
+            }
+            lane(ticket.priority).queue.remove(ticket);
+            ticket.state = Ticket.ABANDONED;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Ticket ticket, boolean success) {
+        List<Ticket> granted;
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            Lane lane = lane(ticket.priority);
+            inFlight--;
+            lane.inFlight--;
+            if (success) {
+                lane.completed++;
+            } else {
+                lane.failed++;
+            }
+
+            if (ticket.priority == Priority.INTERACTIVE) {
+                long latency = now - ticket.enqueuedAt;
+                interactiveLatencyNanos = interactiveLatencyNanos == 0 ? latency
+                        : interactiveLatencyNanos + LATENCY_SMOOTHING * (latency - interactiveLatencyNanos);
+                if (interactiveLatencyNanos > latencyTargetNanos) {
+                    throttle();
+                }
+            } else if (interactive.queue.isEmpty()
+                    && (interactive.inFlight == 0 || interactiveLatencyNanos <= latencyTargetNanos)
+                    && backgroundLimit < maxBackground) {
+                backgroundLimit++;
+            }
+            granted = drain(now);
+        } finally {
+            lock.unlock();
+        }
+        granted.forEach(next -> next.gate.complete(null));
+    }
+
+    /**
+     * Выдаёт освободившиеся места: сначала интерактивной очереди, затем фоновой в пределах её лимита
+     */
+    private List<Ticket> drain(long now) {
+        List<Ticket> granted = new ArrayList<>(2);
+        while (!interactive.queue.isEmpty() && canStart(Priority.INTERACTIVE)) {
+            Ticket next = interactive.queue.pollFirst();
+            start(next, now);
+            granted.add(next);
+        }
+        while (!background.queue.isEmpty() && canStart(Priority.BACKGROUND)) {
+            Ticket next = background.queue.pollFirst();
+            start(next, now);
+            granted.add(next);
+        }
+        return granted;
+    }
+
+    private boolean canStart(Priority priority) {
+        if (inFlight >= maxConcurrent) {
+            return false;
+        }
+        return priority == Priority.INTERACTIVE
+                || (interactive.queue.isEmpty() && inFlight < maxBackground && background.inFlight < backgroundLimit);
+    }
+
+    private void start(Ticket ticket, long now) {
+        Lane lane = lane(ticket.priority);
+        ticket.state = Ticket.STARTED;
+        inFlight++;
+        lane.inFlight++;
+        lane.started++;
+        long wait = now - ticket.enqueuedAt;
+        lane.totalWaitNanos += wait;
+        lane.maxWaitNanos = Math.max(lane.maxWaitNanos, wait);
+    }
+
+    private void throttle() {
+        int reduced = Math.max(1, backgroundLimit / 2);
+        if (reduced < backgroundLimit) {
+            backgroundLimit = reduced;
+            throttleCount++;
+            logger.debug("Background upstream limit reduced to {}", reduced);
+        }
+    }
+
+    private Lane lane(Priority priority) {
+        return priority == Priority.INTERACTIVE ? interactive : background;
+    }
+
+    public List<UpstreamLaneStatus> getLaneStatus() {
+        lock.lock();
+        try {
+            return List.of(interactive.status(), background.status());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Текущий предел одновременных фоновых запросов */
+    public int getBackgroundLimit() {
+        lock.lock();
+        try {
+            return backgroundLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Сглаженная задержка интерактивного запроса, включая ожидание в очереди */
+    public double getInteractiveLatencyMillis() {
+        lock.lock();
+        try {
+            return interactiveLatencyNanos / 1_000_000.0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Сколько раз фоновый предел уменьшался из-за интерактивной нагрузки */
+    public long getThrottleCount() {
+        lock.lock();
+        try {
+            return throttleCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    private static final class Ticket {
+        static final int QUEUED = 0;
+        static final int STARTED = 1;
+        static final int ABANDONED = 2;
+
+        final Priority priority;
+        final long enqueuedAt;
+        final CompletableFuture<Void> gate;
+        int state;
+
+        Ticket(Priority priority, long enqueuedAt) {
+            this.priority = priority;
+            this.enqueuedAt = enqueuedAt;
+            this.gate = new CompletableFuture<>();
+        }
+    }
+
+    private static final class Lane {
+        final Priority priority;
+        final ArrayDeque<Ticket> queue;
+        int inFlight;
+        long started;
+        long completed;
+        long failed;
+        long totalWaitNanos;
+        long maxWaitNanos;
+
+        Lane(Priority priority) {
+            this.priority = priority;
+            this.queue = new ArrayDeque<>();
+        }
+
+        UpstreamLaneStatus status() {
+            return new UpstreamLaneStatus(priority.name().toLowerCase(Locale.ROOT), inFlight, queue.size(), started, completed,
+                    failed, started > 0 ? totalWaitNanos / 1_000_000.0 / started : 0, maxWaitNanos / 1_000_000.0);
+        }
+    }
+}
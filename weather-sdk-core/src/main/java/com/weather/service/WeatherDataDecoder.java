@@ -0,0 +1,207 @@
+package com.weather.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.weather.model.WeatherData;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Потоковый разбор ответа /weather в WeatherData без рефлексии ObjectMapper.
+ * <p>
+ * Имена полей совпадают с @JsonProperty модели; выбор поля - switch по строке, то есть по её
+ * заранее посчитанному хэшу. Поля, которых нет в модели (coord, clouds, rain и т.п.), пропускаются
+ * целиком без построения объектов. Приведение типов повторяет поведение Jackson по умолчанию:
+ * null остаётся null, дробные числа усекаются для целых полей, числа в строках разбираются.
+ */
+final class WeatherDataDecoder {
+
+    private WeatherDataDecoder() {
+    }
+
+    static WeatherData decode(JsonFactory jsonFactory, String body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Weather response is not a JSON object");
+            }
+
+            WeatherData data = new WeatherData();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "weather" -> data.setWeather(readWeatherList(parser, value));
+                    case "main" -> data.setMain(readMain(parser, value));
+                    case "visibility" -> data.setVisibility(readInteger(parser, value));
+                    case "wind" -> data.setWind(readWind(parser, value));
+                    case "dt" -> data.setDatetime(readLong(parser, value));
+                    case "sys" -> data.setSys(readSys(parser, value));
+                    case "timezone" -> data.setTimezone(readInteger(parser, value));
+                    case "name" -> data.setName(readString(parser, value));
+                    default -> parser.skipChildren();
+                }
+            }
+            return data;
+        }
+    }
+
+    private static List<WeatherData.Weather> readWeatherList(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Expected array for field 'weather'");
+        }
+        List<WeatherData.Weather> list = new ArrayList<>(1);
+        JsonToken item;
+        while ((item = parser.nextToken()) != JsonToken.END_ARRAY) {
+            list.add(readWeather(parser, item));
+        }
+        return list;
+    }
+
+    private static WeatherData.Weather readWeather(JsonParser parser, JsonToken value) throws IOException {
+        if (!startObject(parser, value, "weather[]")) {
+            return null;
+        }
+        WeatherData.Weather weather = new WeatherData.Weather();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "id" -> weather.setId(readInteger(parser, token));
+                case "main" -> weather.setMain(readString(parser, token));
+                case "description" -> weather.setDescription(readString(parser, token));
+                default -> parser.skipChildren();
+            }
+        }
+        return weather;
+    }
+
+    private static WeatherData.Main readMain(JsonParser parser, JsonToken value) throws IOException {
+        if (!startObject(parser, value, "main")) {
+            return null;
+        }
+        WeatherData.Main main = new WeatherData.Main();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "temp" -> main.setTemp(readDouble(parser, token));
+                case "feels_like" -> main.setFeelsLike(readDouble(parser, token));
+                default -> parser.skipChildren();
+            }
+        }
+        return main;
+    }
+
+    private static WeatherData.Wind readWind(JsonParser parser, JsonToken value) throws IOException {
+        if (!startObject(parser, value, "wind")) {
+            return null;
+        }
+        WeatherData.Wind wind = new WeatherData.Wind();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("speed".equals(field)) {
+                wind.setSpeed(readDouble(parser, token));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return wind;
+    }
+
+    private static WeatherData.Sys readSys(JsonParser parser, JsonToken value) throws IOException {
+        if (!startObject(parser, value, "sys")) {
+            return null;
+        }
+        WeatherData.Sys sys = new WeatherData.Sys();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "sunrise" -> sys.setSunrise(readLong(parser, token));
+                case "sunset" -> sys.setSunset(readLong(parser, token));
+                case "country" -> sys.setCountry(readString(parser, token));
+                default -> parser.skipChildren();
+            }
+        }
+        return sys;
+    }
+
+    /**
+     * true, если значение - объект; false для null; иначе ошибка формата
+     */
+    private static boolean startObject(JsonParser parser, JsonToken value, String field) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return false;
+        }
+        if (value != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected object for field '" + field + "'");
+        }
+        return true;
+    }
+
+    private static String readString(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!value.isScalarValue()) {
+            throw new JsonParseException(parser, "Expected string for field '" + parser.getCurrentName() + "'");
+        }
+        return parser.getText();
+    }
+
+    private static Integer readInteger(JsonParser parser, JsonToken value) throws IOException {
+        return switch (value) {
+            case VALUE_NULL -> null;
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getIntValue();
+            case VALUE_STRING -> (int) parseInteger(parser);
+            default -> throw new JsonParseException(parser,
+                    "Expected number for field '" + parser.getCurrentName() + "'");
+        };
+    }
+
+    private static Long readLong(JsonParser parser, JsonToken value) throws IOException {
+        return switch (value) {
+            case VALUE_NULL -> null;
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getLongValue();
+            case VALUE_STRING -> parseInteger(parser);
+            default -> throw new JsonParseException(parser,
+                    "Expected number for field '" + parser.getCurrentName() + "'");
+        };
+    }
+
+    private static Double readDouble(JsonParser parser, JsonToken value) throws IOException {
+        return switch (value) {
+            case VALUE_NULL -> null;
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getDoubleValue();
+            case VALUE_STRING -> parseDouble(parser);
+            default -> throw new JsonParseException(parser,
+                    "Expected number for field '" + parser.getCurrentName() + "'");
+        };
+    }
+
+    private static long parseInteger(JsonParser parser) throws IOException {
+        String text = parser.getText().trim();
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new JsonParseException(parser, "Cannot parse integer '" + text + "'");
+        }
+    }
+
+    private static double parseDouble(JsonParser parser) throws IOException {
+        String text = parser.getText().trim();
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw new JsonParseException(parser, "Cannot parse number '" + text + "'");
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.weather.service;
+
+import com.weather.model.WeatherData;
+
+import java.util.List;
+
+/**
+ * Оценка удерживаемого размера записи кэша в байтах (64-bit JVM, сжатые ссылки).
+ * Оценка приблизительная, но монотонна по длине строк и числу элементов.
+ */
+final class WeatherDataWeigher {
+    private static final int OBJECT_HEADER = 12;
+    private static final int REFERENCE = 4;
+    private static final int BOXED_NUMBER = 16;
+    private static final int HASH_MAP_ENTRY = 40;
+    private static final int CACHE_ENTRY = 32;
+    private static final int WEATHER_DATA = 56;
+    private static final int ARRAY_LIST = 24;
+    private static final int WEATHER = 24;
+    private static final int MAIN = 24;
+    private static final int WIND = 16;
+    private static final int SYS = 24;
+    // WeatherResponse с вложенными объектами; строки и числа в стандартных единицах общие с WeatherData
+    private static final int RESPONSE_VIEW = 184;
+
+    private WeatherDataWeigher() {
+    }
+
+    static long estimate(String city, WeatherData data) {
+        long size = HASH_MAP_ENTRY + CACHE_ENTRY + RESPONSE_VIEW + stringSize(city) + WEATHER_DATA;
+
+        List<WeatherData.Weather> weather = data.getWeather();
+        if (weather != null) {
+            size += ARRAY_LIST + align(OBJECT_HEADER + 4 + (long) REFERENCE * weather.size());
+            for (WeatherData.Weather item : weather) {
+                if (item != null) {
+                    size += WEATHER + stringSize(item.getMain()) + stringSize(item.getDescription());
+                }
+            }
+        }
+        if (data.getMain() != null) {
+            size += MAIN + boxedSize(data.getMain().getTemp()) + boxedSize(data.getMain().getFeelsLike());
+        }
+        if (data.getWind() != null) {
+            size += WIND + boxedSize(data.getWind().getSpeed());
+        }
+        if (data.getSys() != null) {
+            size += SYS + boxedSize(data.getSys().getSunrise()) + boxedSize(data.getSys().getSunset())
+                    + stringSize(data.getSys().getCountry());
+        }
+        size += boxedSize(data.getVisibility()) + boxedSize(data.getDatetime()) + boxedSize(data.getTimezone());
+        size += stringSize(data.getName());
+        return size;
+    }
+
+    /**
+     * Дополнительная память на одно представление ответа в другой системе единиц
+     */
+    static long responseView() {
+        return RESPONSE_VIEW;
+    }
+
+    private static long stringSize(String value) {
+        if (value == null) {
+            return 0;
+        }
+        // String (24) + byte[]; для не-Latin1 символов по два байта на символ
+        int bytesPerChar = isLatin1(value) ? 1 : 2;
+        return 24 + align(OBJECT_HEADER + 4 + (long) value.length() * bytesPerChar);
+    }
+
+    private static boolean isLatin1(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long boxedSize(Object value) {
+        return value == null ? 0 : BOXED_NUMBER;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
@@ -1,30 +1,114 @@
 package com.weather.service;
 
 import com.weather.config.OperatingMode;
+import com.weather.config.Units;
+import com.weather.config.WeatherDescriptions;
 import com.weather.dto.WeatherResponse;
+import com.weather.exception.CityNotFoundException;
+import com.weather.exception.DeadlineExceededException;
+import com.weather.exception.WeatherSDKException;
+import com.weather.model.AlertRule;
+import com.weather.model.ApiKeyStatus;
+import com.weather.model.CityMetricValue;
+import com.weather.model.ForecastData;
+import com.weather.model.MetricAggregate;
+import com.weather.model.ObservationStats;
+import com.weather.model.WeatherMetric;
 import com.weather.model.WeatherData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 
 public class WeatherProvider {
     private static final Logger logger = LoggerFactory.getLogger(WeatherProvider.class);
+    // Запас до дедлайна на поиск устаревшего ответа и возврат вызывающему
+    private static final long DEADLINE_RESERVE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    // Префикс ключа кэша для городов, запрошенных по идентификатору
+    private static final String ID_KEY_PREFIX = "id:";
+    private static final int DEFAULT_UPSTREAM_CONCURRENCY = 8;
+    private static final long DEFAULT_INTERACTIVE_LATENCY_TARGET_MS = 1000;
 
     private final String apiKey;
     private final OperatingMode mode;
     private final ApiClient apiClient;
     private final CacheManager cacheManager;
+    private final NegativeCache negativeCache;
+    private final ForecastCache forecastCache;
+    private final ObservationHistory history;
+    private final PopularCities popularCities;
     private final PollingService pollingService;
+    private final Executor blockingExecutor;
+    private final Executor callbackExecutor;
+    private final ScheduledExecutorService deadlineScheduler;
+    private final boolean ownsDeadlineScheduler;
+    private final UpstreamDispatcher dispatcher;
+    private final TraceSampler traceSampler;
+    private final AlertEngine alertEngine;
+    private volatile CacheWarmer warmer;
+    private volatile long lastAccessTime;
+    private volatile boolean shutdown;
 
     public WeatherProvider(String apiKey, OperatingMode mode,
                            ApiClient apiClient, CacheManager cacheManager) {
+        this(apiKey, mode, apiClient, cacheManager, new NegativeCache(0, 0), new ForecastCache(10, 60),
+                new ObservationHistory(0, 0), new PopularCities(0), null, null,
+                new UpstreamDispatcher(DEFAULT_UPSTREAM_CONCURRENCY, DEFAULT_INTERACTIVE_LATENCY_TARGET_MS),
+                10, new TraceSampler(0));
+    }
+
+    /**
+     * @param scheduler        общий планировщик для опроса и таймеров дедлайна; если null, создаются собственные потоки
+     * @param blockingExecutor исполнитель для блокирующих запросов опроса и прогрева
+     *                         (виртуальные или платформенные потоки)
+     * @param popularCities    учёт популярных городов для прогрева кэша, может быть общим для провайдеров
+     * @param dispatcher       очередь запросов к API, общая для провайдеров: промахи пользователей
+     *                         обслуживаются раньше опроса и прогрева
+     */
+    public WeatherProvider(String apiKey, OperatingMode mode,
+                           ApiClient apiClient, CacheManager cacheManager,
+                           NegativeCache negativeCache, ForecastCache forecastCache, ObservationHistory history,
+                           PopularCities popularCities, ScheduledExecutorService scheduler,
+                           Executor blockingExecutor, UpstreamDispatcher dispatcher, long pollingIntervalMinutes,
+                           TraceSampler traceSampler) {
         this.apiKey = apiKey;
         this.mode = mode;
         this.apiClient = apiClient;
         this.cacheManager = cacheManager;
+        this.negativeCache = negativeCache;
+        this.forecastCache = forecastCache;
+        this.history = history;
+        this.popularCities = popularCities;
+        this.blockingExecutor = blockingExecutor;
+        this.callbackExecutor = blockingExecutor != null ? blockingExecutor : ForkJoinPool.commonPool();
+        this.ownsDeadlineScheduler = scheduler == null;
+        this.deadlineScheduler = scheduler != null ? scheduler : createDeadlineScheduler();
+        this.dispatcher = dispatcher;
+        this.traceSampler = traceSampler;
+        this.lastAccessTime = System.currentTimeMillis();
+        this.alertEngine = new AlertEngine(callbackExecutor);
+        // Город, вытесненный из кэша, при возвращении считается новым
+        cacheManager.addEvictionListener((city, data, cause) -> alertEngine.forget(city));
 
         if (mode == OperatingMode.POLLING) {
-            this.pollingService = new PollingService(this, 10);
+            this.pollingService = scheduler != null
+                    ? new PollingService(this, Math.min(pollingIntervalMinutes, maxPollingIntervalMinutes()),
+                    maxPollingIntervalMinutes(), scheduler, blockingExecutor, cacheManager.getClock())
+                    : new PollingService(this, pollingIntervalMinutes);
             this.pollingService.start();
             logger.info("WeatherProvider initialized in POLLING mode");
         } else {
@@ -34,55 +118,534 @@ public class WeatherProvider {
     }
 
 
+    private static ScheduledExecutorService createDeadlineScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "WeatherSdkDeadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * Город должен обновиться раньше, чем истечёт его запись в кэше: предел интервала опроса
+     * на минуту меньше TTL
+     */
+    private long maxPollingIntervalMinutes() {
+        return Math.max(1, cacheManager.getTtlMillis() / 60_000 - 1);
+    }
+
+
     public WeatherResponse getWeather(String cityName) {
+        return getWeather(cityName, Units.STANDARD);
+    }
+
+    /**
+     * Погода в заданной системе единиц. Все системы обслуживаются одним запросом к API
+     * и одной записью кэша: пересчёт выполняется локально.
+     */
+    public WeatherResponse getWeather(String cityName, Units units) {
+        return getWeather(cityName, units, null);
+    }
+
+    /**
+     * Погода в заданных единицах с описанием на заданном языке (null - исходное английское).
+     * Перевод берётся из локальной таблицы по id условия, без параметра lang у API.
+     *
+     * @throws IllegalArgumentException если язык не поддерживается
+     */
+    public WeatherResponse getWeather(String cityName, Units units, String language) {
+        return getWeatherByKey(requireCityName(cityName), units, language);
+    }
+
+    /**
+     * Название города без пробелов по краям. Названия с префиксом ключей по id отклоняются,
+     * чтобы название не читалось как запрос по идентификатору.
+     *
+     * @throws IllegalArgumentException если название пустое или начинается с "id:"
+     */
+    private static String requireCityName(String cityName) {
         if (cityName == null || cityName.trim().isEmpty()) {
             throw new IllegalArgumentException("City name cannot be null or empty");
         }
-
         String normalizedCity = cityName.trim();
-        logger.debug("Getting weather for city: {}", normalizedCity);
+        if (normalizedCity.regionMatches(true, 0, ID_KEY_PREFIX, 0, ID_KEY_PREFIX.length())) {
+            throw new IllegalArgumentException("City name cannot start with '" + ID_KEY_PREFIX + "', use the city id");
+        }
+        return normalizedCity;
+    }
 
-        WeatherData weatherData;
+    private WeatherResponse getWeatherByKey(String normalizedCity, Units units, String language) {
+        int languageIndex = WeatherDescriptions.getInstance().languageIndex(language);
+        touch();
 
-        if (mode == OperatingMode.POLLING) {
-            weatherData = cacheManager.get(normalizedCity);
-            if (weatherData != null) {
-                logger.debug("Returning cached data for city: {}", normalizedCity);
-                return new WeatherResponse(weatherData);
-            } else {
-                logger.debug("No cached data found for city: {}, fetching from API", normalizedCity);
-                weatherData = fetchAndCacheWeatherData(normalizedCity);
-                return new WeatherResponse(weatherData);
+        // Путь попадания в кэш не создаёт объектов и не пишет в лог, кроме выборочной трассировки.
+        // Попадания считает запись кэша, прирост за период забирает фабрика через drainHitCounts
+        WeatherResponse cached = cacheManager.getResponse(normalizedCity, units, languageIndex);
+        if (cached != null) {
+            if (traceSampler.sample()) {
+                logger.info("Cache hit for city: {} (sampled trace)", normalizedCity);
             }
+            return cached;
         }
-        else {
-            weatherData = cacheManager.get(normalizedCity);
-            if (weatherData != null) {
-                logger.debug("Returning valid cached data for city: {}", normalizedCity);
-                return new WeatherResponse(weatherData);
+
+        logger.debug("No valid cached data for city: {}, fetching from API", normalizedCity);
+        popularCities.record(normalizedCity);
+        WeatherData weatherData = fetchAndCacheWeatherData(normalizedCity, UpstreamDispatcher.Priority.INTERACTIVE);
+        return new WeatherResponse(weatherData, units, language);
+    }
+
+
+    public WeatherResponse getWeatherById(long cityId) {
+        return getWeatherById(cityId, Units.STANDARD, null);
+    }
+
+    /**
+     * Погода по идентификатору города OpenWeatherMap (например, из CityCatalog). Запрос по id
+     * однозначен в отличие от названия; в кэше город хранится под ключом "id:&lt;id&gt;".
+     */
+    public WeatherResponse getWeatherById(long cityId, Units units, String language) {
+        return getWeatherByKey(idKey(cityId), units, language);
+    }
+
+    /**
+     * Погода по идентификатору города с ограничением времени вызова, как getWeather с дедлайном
+     */
+    public WeatherResponse getWeatherById(long cityId, Units units, String language, Duration deadline) {
+        return await(getWeatherByIdAsync(cityId, units, language, deadline), "id " + cityId);
+    }
+
+    public CompletableFuture<WeatherResponse> getWeatherByIdAsync(long cityId, Units units, String language,
+                                                                  Duration deadline) {
+        return getWeatherAsync(idKey(cityId), units, language, deadline, System.nanoTime() + deadline.toNanos());
+    }
+
+    private static String idKey(long cityId) {
+        if (cityId <= 0) {
+            throw new IllegalArgumentException("City id must be positive");
+        }
+        return ID_KEY_PREFIX + cityId;
+    }
+
+    public WeatherResponse getWeather(String cityName, Duration deadline) {
+        return getWeather(cityName, Units.STANDARD, null, deadline);
+    }
+
+    /**
+     * Погода с ограничением времени вызова. Остаток времени передаётся в HTTP-запрос; если ответ
+     * не успевает, запрос отменяется, а вызывающий получает устаревшие данные из кэша
+     * или DeadlineExceededException, если их нет.
+     */
+    public WeatherResponse getWeather(String cityName, Units units, String language, Duration deadline) {
+        return await(getWeatherAsync(cityName, units, language, deadline), cityName);
+    }
+
+    private static WeatherResponse await(CompletableFuture<WeatherResponse> future, String cityName) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new WeatherSDKException("Interrupted while fetching weather data for city: " + cityName, e);
+        } catch (ExecutionException e) {
+            throw asRuntime(e.getCause());
+        }
+    }
+
+    public CompletableFuture<WeatherResponse> getWeatherAsync(String cityName, Duration deadline) {
+        return getWeatherAsync(cityName, Units.STANDARD, null, deadline);
+    }
+
+    /**
+     * Асинхронный вариант getWeather с дедлайном. Попадание в кэш возвращает уже завершённый future.
+     * Отмена future вызывающим отменяет запрос к API.
+     */
+    public CompletableFuture<WeatherResponse> getWeatherAsync(String cityName, Units units, String language,
+                                                              Duration deadline) {
+        return getWeatherAsync(requireCityName(cityName), units, language, deadline,
+                System.nanoTime() + deadline.toNanos());
+    }
+
+    /**
+     * Пакет городов с общим дедлайном. Промахи запрашиваются параллельно; каждый город завершается
+     * своим ответом, устаревшими данными или DeadlineExceededException. Порядок городов сохраняется,
+     * повторы схлопываются; недопустимое название завершает только свой future с IllegalArgumentException.
+     */
+    public Map<String, CompletableFuture<WeatherResponse>> getWeatherBatchAsync(List<String> cityNames, Units units,
+                                                                                String language, Duration deadline) {
+        long deadlineAt = System.nanoTime() + deadline.toNanos();
+        Map<String, CompletableFuture<WeatherResponse>> results = new LinkedHashMap<>();
+        for (String cityName : cityNames) {
+            if (cityName == null || cityName.trim().isEmpty()) {
+                continue;
+            }
+            results.computeIfAbsent(cityName.trim(), city -> {
+                try {
+                    return getWeatherAsync(requireCityName(city), units, language, deadline, deadlineAt);
+                } catch (IllegalArgumentException e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+            });
+        }
+        return results;
+    }
+
+    /**
+     * @param normalizedCity ключ кэша: проверенное название или "id:&lt;id&gt;"
+     */
+    private CompletableFuture<WeatherResponse> getWeatherAsync(String normalizedCity, Units units, String language,
+                                                               Duration deadline, long deadlineAt) {
+        int languageIndex = WeatherDescriptions.getInstance().languageIndex(language);
+        touch();
+
+        WeatherResponse cached = cacheManager.getResponse(normalizedCity, units, languageIndex);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        popularCities.record(normalizedCity);
+        if (negativeCache.contains(normalizedCity)) {
+            return CompletableFuture.failedFuture(new CityNotFoundException(normalizedCity));
+        }
+
+        long waitNanos = deadlineAt - System.nanoTime() - DEADLINE_RESERVE_NANOS;
+        CompletableFuture<WeatherResponse> result = new CompletableFuture<>();
+        if (waitNanos <= 0) {
+            completeAfterDeadline(result, normalizedCity, units, languageIndex, deadline);
+            return result;
+        }
+
+        // Ожидание в очереди диспетчера расходует тот же дедлайн: таймаут запроса считается при старте
+        CompletableFuture<WeatherData> fetch = dispatcher.executeAsync(UpstreamDispatcher.Priority.INTERACTIVE,
+                () -> fetchAsync(normalizedCity,
+                        Duration.ofNanos(Math.max(1, deadlineAt - System.nanoTime() - DEADLINE_RESERVE_NANOS))));
+        fetch.whenComplete((weatherData, error) -> {
+            if (result.isDone()) {
+                return;
+            }
+            if (error == null) {
+                if (weatherData != null) {
+                    weatherData.setTimestamp(cacheManager.getClock().currentTimeMillis());
+                    boolean admitted = cacheManager.put(normalizedCity, weatherData);
+                    history.record(normalizedCity, weatherData);
+                    if (admitted) {
+                        alertEngine.evaluate(normalizedCity, weatherData);
+                    }
+                }
+                result.complete(new WeatherResponse(weatherData, units, language));
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof CityNotFoundException) {
+                negativeCache.put(normalizedCity);
+                result.completeExceptionally(cause);
+            } else if (System.nanoTime() >= deadlineAt - DEADLINE_RESERVE_NANOS) {
+                // Таймаут HTTP-запроса сработал раньше таймера дедлайна
+                completeAfterDeadline(result, normalizedCity, units, languageIndex, deadline);
             } else {
-                logger.debug("Fetching fresh data from API for city: {}", normalizedCity);
-                weatherData = fetchAndCacheWeatherData(normalizedCity);
-                return new WeatherResponse(weatherData);
+                result.completeExceptionally(cause);
             }
+        });
+        // Таймер только передаёт работу: поиск устаревшего ответа идёт в исполнителе блокирующих задач,
+        // а не в потоке общего планировщика
+        ScheduledFuture<?> timer = deadlineScheduler.schedule(() -> callbackExecutor.execute(() -> {
+            if (!result.isDone()) {
+                completeAfterDeadline(result, normalizedCity, units, languageIndex, deadline);
+                fetch.cancel(true);
+            }
+        }), waitNanos, TimeUnit.NANOSECONDS);
+        result.whenComplete((response, error) -> {
+            timer.cancel(false);
+            if (result.isCancelled()) {
+                fetch.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private void completeAfterDeadline(CompletableFuture<WeatherResponse> result, String cityName, Units units,
+                                       int languageIndex, Duration deadline) {
+        WeatherResponse stale = cacheManager.getStaleResponse(cityName, units, languageIndex);
+        if (stale != null) {
+            logger.debug("Deadline of {} ms reached, serving stale data for city: {}", deadline.toMillis(), cityName);
+            result.complete(stale);
+        } else {
+            logger.warn("Deadline of {} ms exceeded for city: {}", deadline.toMillis(), cityName);
+            result.completeExceptionally(new DeadlineExceededException(cityName, deadline));
+        }
+    }
+
+    private static RuntimeException asRuntime(Throwable cause) {
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        return new WeatherSDKException("Failed to fetch weather data", cause);
+    }
+
+
+    /**
+     * Прогноз на 5 дней с шагом 3 часа. Кэшируется отдельно от текущей погоды, со своим TTL.
+     */
+    public ForecastData getForecast(String cityName) {
+        String normalizedCity = requireCityName(cityName);
+        touch();
+
+        ForecastData cached = forecastCache.get(normalizedCity);
+        if (cached != null) {
+            return cached;
+        }
+
+        if (negativeCache.contains(normalizedCity)) {
+            throw new CityNotFoundException(normalizedCity);
+        }
+        try {
+            ForecastData forecast = dispatcher.execute(UpstreamDispatcher.Priority.INTERACTIVE,
+                    () -> apiClient.getForecastData(normalizedCity, cacheManager.getClock()));
+            forecastCache.put(normalizedCity, forecast);
+            return forecast;
+        } catch (CityNotFoundException e) {
+            negativeCache.put(normalizedCity);
+            throw e;
+        }
+    }
+
+    /**
+     * Сводка (min/max/среднее/изменение) по показателю за последнее окно истории наблюдений.
+     * Требует sdk.history.points.per.city > 0; null, если наблюдений в окне нет.
+     */
+    public ObservationStats getHistoryStats(String cityName, WeatherMetric metric, Duration window) {
+        if (cityName == null || cityName.trim().isEmpty()) {
+            throw new IllegalArgumentException("City name cannot be null or empty");
+        }
+        return history.stats(cityName.trim(), metric, window.getSeconds());
+    }
+
+    /**
+     * Города из кэша с наибольшим (highest) или наименьшим значением показателя, например самые жаркие.
+     * Запрос идёт по колоночному снимку кэша, без построения ответов и без запросов к API.
+     */
+    public List<CityMetricValue> getTopCities(WeatherMetric metric, int limit, boolean highest, Units units) {
+        List<CityMetricValue> top = cacheManager.topCities(requireMetric(metric), limit, highest);
+        if (units == null || units == Units.STANDARD) {
+            return top;
+        }
+        List<CityMetricValue> converted = new ArrayList<>(top.size());
+        for (CityMetricValue item : top) {
+            converted.add(new CityMetricValue(item.getCity(), item.getName(), item.getCountry(),
+                    metric.convert(item.getValue(), units)));
         }
+        return converted;
     }
 
+    /**
+     * Сводка (число, min, max, среднее) показателя по свежим записям кэша; country == null - по всем
+     */
+    public MetricAggregate getAggregate(WeatherMetric metric, String country, Units units) {
+        return convert(cacheManager.aggregate(requireMetric(metric), country), metric, units);
+    }
+
+    /**
+     * Сводки показателя по странам, от страны с наибольшим числом городов в кэше
+     */
+    public List<MetricAggregate> getAggregateByCountry(WeatherMetric metric, Units units) {
+        List<MetricAggregate> groups = cacheManager.aggregateByCountry(requireMetric(metric));
+        List<MetricAggregate> converted = new ArrayList<>(groups.size());
+        for (MetricAggregate group : groups) {
+            converted.add(convert(group, metric, units));
+        }
+        return converted;
+    }
+
+    private static MetricAggregate convert(MetricAggregate aggregate, WeatherMetric metric, Units units) {
+        if (units == null || units == Units.STANDARD) {
+            return aggregate;
+        }
+        return new MetricAggregate(aggregate.getGroup(), aggregate.getCount(), metric.convert(aggregate.getMin(), units),
+                metric.convert(aggregate.getMax(), units), metric.convert(aggregate.getAverage(), units));
+    }
+
+    private static WeatherMetric requireMetric(WeatherMetric metric) {
+        if (metric == null) {
+            throw new IllegalArgumentException("Metric cannot be null");
+        }
+        return metric;
+    }
+
+    /**
+     * Регистрирует пороговое правило, например AlertRule.above("Oslo", WeatherMetric.WIND_SPEED, 15, Units.METRIC).
+     * Правила проверяются при каждом новом наблюдении города (запрос, опрос, прогрев), но только те,
+     * чей порог лежит между прежним и новым значением. Получатель вызывается асинхронно один раз
+     * при переходе условия в истинное; город правила сравнивается с ключом кэша без учёта регистра.
+     *
+     * @return идентификатор правила
+     */
+    public long addAlertRule(AlertRule rule, AlertListener listener) {
+        return alertEngine.addRule(rule, listener);
+    }
+
+    public boolean removeAlertRule(long ruleId) {
+        return alertEngine.removeRule(ruleId);
+    }
+
+    public int getAlertRuleCount() {
+        return alertEngine.getRuleCount();
+    }
+
+    /**
+     * Данные из кэша без обращения к API; null, если города в кэше нет или данные устарели
+     */
+    public WeatherResponse getCachedWeather(String cityName) {
+        return getCachedWeather(cityName, Units.STANDARD);
+    }
+
+    public WeatherResponse getCachedWeather(String cityName, Units units) {
+        return getCachedWeather(cityName, units, null);
+    }
+
+    public WeatherResponse getCachedWeather(String cityName, Units units, String language) {
+        return getCachedWeatherByKey(requireCityName(cityName), units, language);
+    }
+
+    /**
+     * Данные из кэша по идентификатору города без обращения к API; null, если их нет или они устарели
+     */
+    public WeatherResponse getCachedWeatherById(long cityId, Units units, String language) {
+        return getCachedWeatherByKey(idKey(cityId), units, language);
+    }
+
+    private WeatherResponse getCachedWeatherByKey(String normalizedCity, Units units, String language) {
+        int languageIndex = WeatherDescriptions.getInstance().languageIndex(language);
+        touch();
+        return cacheManager.getResponse(normalizedCity, units, languageIndex);
+    }
+
+    /**
+     * Запускает фоновый прогрев кэша списком городов. Пока он идёт, isReady() возвращает false.
+     * Запросы к API выдаются не чаще ratePerSecond в секунду (0 - без ограничения).
+     */
+    public void prewarm(List<String> cities, int concurrency, double ratePerSecond) {
+        CacheWarmer cacheWarmer = new CacheWarmer(cities, ratePerSecond);
+        this.warmer = cacheWarmer;
+        Executor executor = blockingExecutor != null ? blockingExecutor : runnable -> {
+            Thread thread = new Thread(runnable, "WeatherSdkWarmup");
+            thread.setDaemon(true);
+            thread.start();
+        };
+        cacheWarmer.start(executor, concurrency, this::warmCity);
+    }
+
+    private void warmCity(String cityName) {
+        if (cacheManager.getResponse(cityName) == null) {
+            fetchAndCacheWeatherData(cityName, UpstreamDispatcher.Priority.BACKGROUND);
+        }
+    }
+
+    /**
+     * Провайдер готов, когда прогрев кэша завершён или не запускался
+     */
+    public boolean isReady() {
+        CacheWarmer cacheWarmer = warmer;
+        return cacheWarmer == null || cacheWarmer.isDone();
+    }
+
+    /**
+     * Ждёт окончания прогрева не дольше timeout; true, если провайдер готов
+     */
+    public boolean awaitReady(Duration timeout) throws InterruptedException {
+        CacheWarmer cacheWarmer = warmer;
+        return cacheWarmer == null || cacheWarmer.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public int getWarmupTotal() {
+        CacheWarmer cacheWarmer = warmer;
+        return cacheWarmer != null ? cacheWarmer.getTotal() : 0;
+    }
+
+    public int getWarmupCompleted() {
+        CacheWarmer cacheWarmer = warmer;
+        return cacheWarmer != null ? cacheWarmer.getCompleted() : 0;
+    }
+
+    public int getWarmupFailed() {
+        CacheWarmer cacheWarmer = warmer;
+        return cacheWarmer != null ? cacheWarmer.getFailed() : 0;
+    }
+
+
+    private WeatherData fetchAndCacheWeatherData(String cityName, UpstreamDispatcher.Priority priority) {
+        if (negativeCache.contains(cityName)) {
+            logger.debug("Negative cache hit for city: {}", cityName);
+            throw new CityNotFoundException(cityName);
+        }
 
-    private WeatherData fetchAndCacheWeatherData(String cityName) {
         try {
-            WeatherData weatherData = apiClient.getWeatherData(cityName);
+            WeatherData weatherData = fetch(cityName, priority);
             if (weatherData != null) {
-                cacheManager.put(cityName, weatherData);
+                // Последние значения для правил хранятся только для городов в кэше: вытеснение их забывает
+                boolean admitted = cacheManager.put(cityName, weatherData);
+                history.record(cityName, weatherData);
+                if (admitted) {
+                    alertEngine.evaluate(cityName, weatherData);
+                }
                 logger.info("Successfully fetched and cached weather data for: {}", cityName);
             }
             return weatherData;
+        } catch (CityNotFoundException e) {
+            negativeCache.put(cityName);
+            logger.warn("City not found, remembered in negative cache: {}", cityName);
+            throw e;
         } catch (Exception e) {
             logger.error("Failed to fetch weather data for city: {}", cityName, e);
             throw e;
         }
     }
 
+    /**
+     * Запрос к API по ключу кэша через диспетчер: "id:&lt;id&gt;" - по идентификатору, иначе по названию.
+     * Время получения берётся с часов кэша, чтобы сроки записи и отметка данных шли по одним часам.
+     */
+    private WeatherData fetch(String cacheKey, UpstreamDispatcher.Priority priority) {
+        WeatherData data;
+        if (cacheKey.startsWith(ID_KEY_PREFIX)) {
+            long cityId = parseIdKey(cacheKey);
+            data = dispatcher.execute(priority, () -> apiClient.getWeatherDataById(cityId));
+        } else {
+            data = dispatcher.execute(priority, () -> apiClient.getWeatherData(cacheKey));
+        }
+        if (data != null) {
+            data.setTimestamp(cacheManager.getClock().currentTimeMillis());
+        }
+        return data;
+    }
+
+    /**
+     * Асинхронный запрос к API по ключу кэша, с тем же разбором ключа, что и fetch
+     */
+    private CompletableFuture<WeatherData> fetchAsync(String cacheKey, Duration timeout) {
+        if (cacheKey.startsWith(ID_KEY_PREFIX)) {
+            return apiClient.getWeatherDataByIdAsync(parseIdKey(cacheKey), timeout);
+        }
+        return apiClient.getWeatherDataAsync(cacheKey, timeout);
+    }
+
+    /**
+     * Идентификатор из ключа "id:&lt;id&gt;"; такой ключ может прийти и из списка прогрева
+     *
+     * @throws IllegalArgumentException если после префикса не положительное число
+     */
+    private static long parseIdKey(String cacheKey) {
+        long cityId;
+        try {
+            cityId = Long.parseLong(cacheKey.substring(ID_KEY_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            cityId = 0;
+        }
+        if (cityId <= 0) {
+            throw new IllegalArgumentException("Invalid city id key: " + cacheKey);
+        }
+        return cityId;
+    }
+
     public void updateAllCachedData() {
         logger.debug("Updating all cached weather data");
         String[] cities = cacheManager.getAllCities();
@@ -92,9 +655,7 @@ public class WeatherProvider {
 
         for (String city : cities) {
             try {
-                WeatherData freshData = apiClient.getWeatherData(city);
-                if (freshData != null) {
-                    cacheManager.put(city, freshData);
+                if (refreshCachedCity(city) != null) {
                     successCount++;
                     logger.debug("Successfully updated data for city: {}", city);
                 }
@@ -107,14 +668,89 @@ public class WeatherProvider {
         logger.info("Cache update completed: {} successful, {} failed", successCount, failureCount);
     }
 
+    /**
+     * Обновляет город из кэша фоновым запросом. Если upstream отдал то же наблюдение (тот же dt и значения),
+     * продлевается только срок записи: готовые ответы и история остаются прежними.
+     *
+     * @return свежее наблюдение или null, если API ничего не вернул
+     */
+    public WeatherData refreshCachedCity(String cityName) {
+        WeatherData freshData = fetch(cityName, UpstreamDispatcher.Priority.BACKGROUND);
+        if (freshData != null && cacheManager.refresh(cityName, freshData)) {
+            history.record(cityName, freshData);
+            alertEngine.evaluate(cityName, freshData);
+        }
+        return freshData;
+    }
+
+    /**
+     * Города с действительными данными в кэше
+     */
+    public String[] getCachedCities() {
+        return cacheManager.getAllCities();
+    }
+
+    /**
+     * Применяет новые настройки к работающему провайдеру без сброса кэша: сначала TTL и ёмкость,
+     * затем интервал опроса, предел которого зависит от нового TTL
+     */
+    public void reconfigure(int cacheCapacity, long cacheTtlMinutes, long pollingIntervalMinutes) {
+        if (cacheManager.getTtlMillis() != cacheTtlMinutes * 60 * 1000) {
+            cacheManager.setTtlMinutes(cacheTtlMinutes);
+        }
+        if (cacheManager.getCapacity() != cacheCapacity) {
+            cacheManager.setCapacity(cacheCapacity);
+        }
+        if (pollingService != null) {
+            pollingService.setIntervals(Math.min(pollingIntervalMinutes, maxPollingIntervalMinutes()),
+                    maxPollingIntervalMinutes());
+        }
+    }
+
     public void shutdown() {
+        shutdown = true;
+        CacheWarmer cacheWarmer = warmer;
+        if (cacheWarmer != null) {
+            cacheWarmer.cancel();
+        }
         if (pollingService != null && pollingService.isRunning()) {
             pollingService.stop();
-            logger.info("WeatherProvider shutdown completed");
         }
+        if (ownsDeadlineScheduler) {
+            deadlineScheduler.shutdownNow();
+        }
+        cacheManager.stopExpirySweeper();
+        cacheManager.clear();
+        forecastCache.clear();
+        history.clear();
+        negativeCache.clear();
+        logger.info("WeatherProvider shutdown completed");
     }
 
 
+    /**
+     * Отмечает обращение к провайдеру. Остановленный провайдер отказывает, а не отвечает из очищенного кэша.
+     *
+     * @throws IllegalStateException если провайдер уже остановлен
+     */
+    public void touch() {
+        lastAccessTime = System.currentTimeMillis();
+        if (shutdown) {
+            throw new IllegalStateException("WeatherProvider has been shut down");
+        }
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Время последнего обращения к провайдеру, используется фабрикой для освобождения простаивающих
+     */
+    public long getLastAccessTime() {
+        return lastAccessTime;
+    }
+
     public String getApiKey() {
         return apiKey;
     }
@@ -123,7 +759,43 @@ public class WeatherProvider {
         return mode;
     }
 
+    /**
+     * Бюджет и карантин ключей пула; пусто, если провайдер работает с одним ключом
+     */
+    public List<ApiKeyStatus> getApiKeyStatus() {
+        return apiClient.getKeyStatus();
+    }
+
+    /**
+     * Города с наибольшим числом попаданий в кэш с прошлого вызова, для учёта популярности вне пути попадания
+     */
+    public Map<String, Long> drainHitCounts(int limit) {
+        return cacheManager.drainHitCounts(limit);
+    }
+
     public int getCacheSize() {
         return cacheManager.size();
     }
+
+    public long getCacheWeightBytes() {
+        return cacheManager.getWeightBytes();
+    }
+
+    /**
+     * Устанавливает квоту памяти кэша провайдера, выделенную фабрикой из общего бюджета
+     */
+    public void setCacheMemoryQuota(long bytes) {
+        cacheManager.setMaxWeightBytes(bytes);
+    }
+
+    /**
+     * Подписка на удаление городов из кэша погоды (по TTL, по лимитам или явно)
+     */
+    public void addCacheEvictionListener(CacheEvictionListener listener) {
+        cacheManager.addEvictionListener(listener);
+    }
+
+    public int getNegativeCacheSize() {
+        return negativeCache.size();
+    }
 }
\ No newline at end of file
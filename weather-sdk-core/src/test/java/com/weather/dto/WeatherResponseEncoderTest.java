@@ -0,0 +1,138 @@
+package com.weather.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weather.config.Units;
+import com.weather.model.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Ручная запись ответа должна давать те же байты, что и ObjectMapper.writeValueAsBytes,
+ * во всех единицах и языках, в том числе при отсутствующих полях наблюдения
+ */
+class WeatherResponseEncoderTest {
+
+    private static final String[] LANGUAGES = {null, "ru", "de"};
+    private static final int RANDOM_OBSERVATIONS = 5_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void completeObservationMatchesObjectMapper() throws IOException {
+        WeatherData data = new WeatherData();
+        WeatherData.Weather weather = new WeatherData.Weather();
+        weather.setId(803);
+        weather.setMain("Clouds");
+        weather.setDescription("broken clouds");
+        data.setWeather(List.of(weather));
+        WeatherData.Main main = new WeatherData.Main();
+        main.setTemp(288.45);
+        main.setFeelsLike(287.97);
+        data.setMain(main);
+        data.setVisibility(10000);
+        WeatherData.Wind wind = new WeatherData.Wind();
+        wind.setSpeed(5.14);
+        data.setWind(wind);
+        data.setDatetime(1729335600L);
+        WeatherData.Sys sys = new WeatherData.Sys();
+        sys.setSunrise(1729320012L);
+        sys.setSunset(1729357563L);
+        sys.setCountry("GB");
+        data.setSys(sys);
+        data.setTimezone(3600);
+        data.setName("London");
+
+        assertAllVariantsEquivalent(data);
+    }
+
+    @Test
+    void randomObservationsMatchObjectMapper() throws IOException {
+        Random random = new Random(11);
+        for (int i = 0; i < RANDOM_OBSERVATIONS; i++) {
+            assertAllVariantsEquivalent(randomObservation(random));
+        }
+    }
+
+    private void assertAllVariantsEquivalent(WeatherData data) throws IOException {
+        for (Units units : Units.values()) {
+            for (String language : LANGUAGES) {
+                WeatherResponse response = new WeatherResponse(data, units, language);
+                assertArrayEquals(objectMapper.writeValueAsBytes(response), encode(response),
+                        units + "/" + language);
+            }
+        }
+    }
+
+    private byte[] encode(WeatherResponse response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            WeatherResponseEncoder.write(generator, response);
+        }
+        return out.toByteArray();
+    }
+
+    private static WeatherData randomObservation(Random random) {
+        WeatherData data = new WeatherData();
+        if (random.nextInt(5) != 0) {
+            List<WeatherData.Weather> list = new ArrayList<>();
+            int count = random.nextInt(3);
+            for (int i = 0; i < count; i++) {
+                WeatherData.Weather weather = new WeatherData.Weather();
+                weather.setId(random.nextBoolean() ? 200 + random.nextInt(700) : null);
+                weather.setMain(randomString(random));
+                weather.setDescription(randomString(random));
+                list.add(weather);
+            }
+            data.setWeather(list);
+        }
+        if (random.nextInt(5) != 0) {
+            WeatherData.Main main = new WeatherData.Main();
+            main.setTemp(randomDouble(random));
+            main.setFeelsLike(randomDouble(random));
+            data.setMain(main);
+        }
+        data.setVisibility(random.nextInt(5) != 0 ? random.nextInt(10001) : null);
+        if (random.nextInt(5) != 0) {
+            WeatherData.Wind wind = new WeatherData.Wind();
+            wind.setSpeed(randomDouble(random));
+            data.setWind(wind);
+        }
+        data.setDatetime(random.nextInt(5) != 0 ? 1_700_000_000L + random.nextInt(100_000_000) : null);
+        if (random.nextInt(5) != 0) {
+            WeatherData.Sys sys = new WeatherData.Sys();
+            sys.setSunrise(random.nextBoolean() ? 1_700_000_000L + random.nextInt(100_000) : null);
+            sys.setSunset(random.nextBoolean() ? 1_700_000_000L + random.nextInt(100_000) : null);
+            sys.setCountry(random.nextBoolean() ? "DE" : null);
+            data.setSys(sys);
+        }
+        data.setTimezone(random.nextInt(5) != 0 ? (random.nextInt(27) - 12) * 3600 : null);
+        data.setName(randomString(random));
+        return data;
+    }
+
+    private static Double randomDouble(Random random) {
+        return switch (random.nextInt(5)) {
+            case 0 -> null;
+            case 1 -> (double) random.nextInt(400);
+            case 2 -> random.nextDouble() * 1e-5;
+            default -> 200 + random.nextDouble() * 120;
+        };
+    }
+
+    private static String randomString(Random random) {
+        return switch (random.nextInt(5)) {
+            case 0 -> null;
+            case 1 -> "";
+            case 2 -> "São José \"Centro\"\né\u0001";
+            default -> "city-" + random.nextInt(100);
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package com.weather.service;
+
+import com.weather.model.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Воспроизводимое сравнение допуска в кэш: одна и та же трасса (Zipf по популярным городам
+ * с долей разовых запросов-сканов) прогоняется через LRU и TinyLFU
+ */
+class AdmissionPolicyReplayTest {
+
+    private static final int CAPACITY = 100;
+    private static final int CITY_COUNT = 2000;
+    private static final double ZIPF_EXPONENT = 0.9;
+    private static final int REQUESTS = 200_000;
+    private static final long SEED = 42;
+
+    @Test
+    void tinyLfuBeatsLruUnderScans() {
+        for (double scanShare : new double[]{0.3, 0.6}) {
+            double lru = replay(false, scanShare);
+            double tinyLfu = replay(true, scanShare);
+            assertTrue(tinyLfu > lru + 0.05, String.format(
+                    "scan share %.0f%%: TinyLFU hit rate %.3f, LRU %.3f", scanShare * 100, tinyLfu, lru));
+        }
+    }
+
+    @Test
+    void tinyLfuDoesNotLoseWithoutScans() {
+        double lru = replay(false, 0);
+        double tinyLfu = replay(true, 0);
+        assertTrue(tinyLfu >= lru, String.format("TinyLFU hit rate %.3f, LRU %.3f", tinyLfu, lru));
+    }
+
+    /**
+     * Доля попаданий на трассе; промах сразу записывает город в кэш, как это делает провайдер
+     */
+    private static double replay(boolean frequencyAdmission, double scanShare) {
+        CacheManager cacheManager = new CacheManager(CAPACITY, 60, Long.MAX_VALUE, frequencyAdmission);
+        double[] cdf = zipfCdf();
+        Random random = new Random(SEED);
+        int scans = 0;
+        int hits = 0;
+
+        for (int i = 0; i < REQUESTS; i++) {
+            String city;
+            if (random.nextDouble() < scanShare) {
+                city = "scan-" + scans++;
+            } else {
+                int rank = Arrays.binarySearch(cdf, random.nextDouble() * cdf[cdf.length - 1]);
+                city = "city-" + (rank < 0 ? -rank - 1 : rank);
+            }
+
+            if (cacheManager.get(city) != null) {
+                hits++;
+            } else {
+                WeatherData data = new WeatherData();
+                data.setName(city);
+                cacheManager.put(city, data);
+            }
+        }
+        return (double) hits / REQUESTS;
+    }
+
+    private static double[] zipfCdf() {
+        double[] cdf = new double[CITY_COUNT];
+        double sum = 0;
+        for (int i = 0; i < CITY_COUNT; i++) {
+            sum += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cdf[i] = sum;
+        }
+        return cdf;
+    }
+}
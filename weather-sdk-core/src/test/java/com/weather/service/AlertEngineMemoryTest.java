@@ -0,0 +1,61 @@
+package com.weather.service;
+
+import com.weather.config.Units;
+import com.weather.model.AlertRule;
+import com.weather.model.WeatherData;
+import com.weather.model.WeatherMetric;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Последние значения для правил не должны копиться без правил и для городов, которых нет в кэше
+ */
+class AlertEngineMemoryTest {
+
+    @Test
+    void noValuesAreKeptWithoutRules() {
+        AlertEngine engine = new AlertEngine(Runnable::run);
+        for (int i = 0; i < 1000; i++) {
+            engine.evaluate("City" + i, observation(280 + i % 10));
+        }
+        assertEquals(0, engine.getTrackedCityCount());
+
+        long ruleId = engine.addRule(AlertRule.above(null, WeatherMetric.TEMP, 300, Units.STANDARD), event -> { });
+        engine.evaluate("London", observation(284));
+        assertEquals(1, engine.getTrackedCityCount());
+
+        engine.removeRule(ruleId);
+        assertEquals(0, engine.getTrackedCityCount());
+    }
+
+    @Test
+    void putReportsAdmissionRejection() {
+        CacheManager cacheManager = new CacheManager(2, 60, Long.MAX_VALUE, true);
+        assertTrue(cacheManager.put("London", observation(284)));
+        assertTrue(cacheManager.put("Paris", observation(286)));
+        for (int i = 0; i < 20; i++) {
+            cacheManager.getResponse("London");
+            cacheManager.getResponse("Paris");
+        }
+
+        // Разовый город проигрывает по частоте обоим горячим и в кэш не попадает
+        assertFalse(cacheManager.put("Oslo", observation(270)));
+        assertEquals(2, cacheManager.size());
+    }
+
+    private static WeatherData observation(double temp) {
+        WeatherData.Main main = new WeatherData.Main();
+        main.setTemp(temp);
+        WeatherData data = new WeatherData();
+        data.setName("City");
+        data.setWeather(List.of());
+        data.setMain(main);
+        data.setDatetime(1_700_000_000L);
+        return data;
+    }
+}
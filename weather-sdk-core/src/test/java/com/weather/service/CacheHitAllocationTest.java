@@ -0,0 +1,120 @@
+package com.weather.service;
+
+import com.sun.management.ThreadMXBean;
+import com.weather.config.OperatingMode;
+import com.weather.config.Units;
+import com.weather.model.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Путь попадания в кэш не должен создавать объектов: после прогрева счётчик выделенной потоком
+ * памяти не меняется на серии обращений
+ */
+class CacheHitAllocationTest {
+
+    private static final int WARMUP_HITS = 200_000;
+    private static final int MEASURED_HITS = 100_000;
+    private static final int CITY_COUNT = 64;
+
+    @Test
+    void cacheManagerHitsDoNotAllocate() {
+        CacheManager cacheManager = new CacheManager(100, 60, Long.MAX_VALUE, true);
+        cacheManager.put("London", observation("London"));
+
+        assertEquals(0, allocatedBytes(() -> cacheManager.getResponse("London", Units.METRIC, 0)));
+    }
+
+    @Test
+    void weatherProviderHitsDoNotAllocate() {
+        CacheManager cacheManager = new CacheManager(100, 60, Long.MAX_VALUE, true);
+        // Учёт популярности включён, а городов больше, чем он отслеживает: попадания не должны его трогать
+        WeatherProvider provider = new WeatherProvider("test-key", OperatingMode.ON_DEMAND, null, cacheManager,
+                new NegativeCache(0, 0), new ForecastCache(10, 60), new ObservationHistory(0, 0),
+                new PopularCities(2), null, null, new UpstreamDispatcher(8, 1000), 10, new TraceSampler(0));
+        String[] cities = new String[CITY_COUNT];
+        for (int i = 0; i < cities.length; i++) {
+            cities[i] = "City" + i;
+            cacheManager.put(cities[i], observation(cities[i]));
+        }
+        int[] next = new int[1];
+
+        try {
+            assertEquals(0, allocatedBytes(() -> provider.getWeather(cities[next[0]++ % cities.length])));
+            assertEquals(0, allocatedBytes(() -> provider.getWeather(cities[next[0]++ % cities.length], Units.IMPERIAL)));
+            assertEquals(0, allocatedBytes(() -> provider.getWeather(cities[next[0]++ % cities.length], Units.METRIC, "ru")));
+            assertEquals(0, allocatedBytes(() -> provider.getCachedWeather(cities[next[0]++ % cities.length],
+                    Units.STANDARD, null)));
+        } finally {
+            provider.shutdown();
+        }
+    }
+
+    @Test
+    void lruHitsDoNotAllocate() {
+        CacheManager cacheManager = new CacheManager(100, 60);
+        WeatherProvider provider = new WeatherProvider("test-key", OperatingMode.ON_DEMAND, null, cacheManager);
+        cacheManager.put("London", observation("London"));
+
+        try {
+            assertEquals(0, allocatedBytes(() -> provider.getWeather("London")));
+        } finally {
+            provider.shutdown();
+        }
+    }
+
+    /**
+     * Байты, выделенные текущим потоком за MEASURED_HITS обращений после прогрева JIT
+     */
+    private static long allocatedBytes(Hit hit) {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean,
+                "HotSpot ThreadMXBean is required");
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "Thread allocation counters are not supported");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        for (int i = 0; i < WARMUP_HITS; i++) {
+            assertNotNull(hit.call());
+        }
+
+        long threadId = Thread.currentThread().threadId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_HITS; i++) {
+            hit.call();
+        }
+        return threads.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    private static WeatherData observation(String city) {
+        WeatherData.Weather weather = new WeatherData.Weather();
+        weather.setId(800);
+        weather.setMain("Clear");
+        weather.setDescription("clear sky");
+        WeatherData.Main main = new WeatherData.Main();
+        main.setTemp(284.2);
+        main.setFeelsLike(283.1);
+        WeatherData.Wind wind = new WeatherData.Wind();
+        wind.setSpeed(4.1);
+
+        WeatherData data = new WeatherData();
+        data.setName(city);
+        data.setWeather(List.of(weather));
+        data.setMain(main);
+        data.setWind(wind);
+        data.setVisibility(10000);
+        data.setDatetime(1_700_000_000L);
+        data.setTimezone(0);
+        return data;
+    }
+
+    @FunctionalInterface
+    private interface Hit {
+        Object call();
+    }
+}
@@ -0,0 +1,51 @@
+package com.weather.service;
+
+import com.weather.model.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Счётчики попаданий отдают прирост за период: повторный сбор не учитывает те же попадания снова
+ */
+class CacheManagerHitCountTest {
+
+    @Test
+    void drainReturnsHitsSinceLastCall() {
+        CacheManager cacheManager = new CacheManager(10, 60);
+        cacheManager.put("London", observation("London"));
+        cacheManager.put("Paris", observation("Paris"));
+        cacheManager.put("Oslo", observation("Oslo"));
+        for (int i = 0; i < 30; i++) {
+            cacheManager.getResponse("London");
+        }
+        for (int i = 0; i < 20; i++) {
+            cacheManager.getResponse("Paris");
+        }
+        cacheManager.getResponse("Oslo");
+
+        assertEquals(Map.of("London", 30L, "Paris", 20L), cacheManager.drainHitCounts(2));
+        assertTrue(cacheManager.drainHitCounts(2).isEmpty());
+
+        // Новое наблюдение города не сбрасывает несобранные попадания
+        cacheManager.getResponse("Paris");
+        cacheManager.put("Paris", observation("Paris"));
+        cacheManager.getResponse("Paris");
+        assertEquals(Map.of("Paris", 2L), cacheManager.drainHitCounts(2));
+    }
+
+    private static WeatherData observation(String city) {
+        WeatherData.Main main = new WeatherData.Main();
+        main.setTemp(284.2);
+        WeatherData data = new WeatherData();
+        data.setName(city);
+        data.setWeather(List.of());
+        data.setMain(main);
+        data.setDatetime(1_700_000_000L);
+        return data;
+    }
+}
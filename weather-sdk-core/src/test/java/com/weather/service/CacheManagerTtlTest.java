@@ -0,0 +1,49 @@
+package com.weather.service;
+
+import com.weather.model.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Пересчёт сроков при смене TTL и удержания устаревших должен идти от последнего подтверждения
+ * наблюдения, а не от его первого получения
+ */
+class CacheManagerTtlTest {
+
+    private static final long MINUTE = 60_000;
+
+    @Test
+    void ttlChangeKeepsRefreshExtension() {
+        CacheManager cacheManager = new CacheManager(10, 60);
+        long now = System.currentTimeMillis();
+        cacheManager.put("London", observation(now - 50 * MINUTE));
+        // Опрос вернул то же наблюдение: запись продлена от текущего момента
+        assertFalse(cacheManager.refresh("London", observation(now)));
+
+        cacheManager.setTtlMinutes(30);
+        assertNotNull(cacheManager.get("London"));
+
+        cacheManager.setStaleRetentionMinutes(5);
+        assertNotNull(cacheManager.get("London"));
+    }
+
+    @Test
+    void ttlChangeExpiresUnconfirmedEntries() {
+        CacheManager cacheManager = new CacheManager(10, 60);
+        cacheManager.put("London", observation(System.currentTimeMillis() - 50 * MINUTE));
+
+        cacheManager.setTtlMinutes(30);
+        assertNull(cacheManager.get("London"));
+    }
+
+    private static WeatherData observation(long timestamp) {
+        WeatherData data = new WeatherData();
+        data.setName("London");
+        data.setDatetime(1_729_335_600L);
+        data.setTimestamp(timestamp);
+        return data;
+    }
+}
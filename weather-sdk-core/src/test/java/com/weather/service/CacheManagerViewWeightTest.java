@@ -0,0 +1,53 @@
+package com.weather.service;
+
+import com.weather.config.Units;
+import com.weather.config.WeatherDescriptions;
+import com.weather.model.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Представления, построенные на попаданиях, входят в бюджет памяти сразу, а не со следующей записью
+ */
+class CacheManagerViewWeightTest {
+
+    @Test
+    void viewsBuiltOnHitsStayWithinBudget() {
+        long entryWeight = WeatherDataWeigher.estimate("City0", observation("City0"));
+        long budget = 4 * entryWeight;
+        CacheManager cacheManager = new CacheManager(100, 60, budget, false);
+        for (int i = 0; i < 4; i++) {
+            cacheManager.put("City" + i, observation("City" + i));
+        }
+
+        int languages = WeatherDescriptions.getInstance().getLanguageCount();
+        for (Units units : Units.values()) {
+            for (int language = 0; language < languages; language++) {
+                cacheManager.getResponse("City3", units, language);
+                assertTrue(cacheManager.getWeightBytes() <= budget,
+                        "weight " + cacheManager.getWeightBytes() + " exceeds budget " + budget);
+            }
+        }
+        // Место под представления освобождено за счёт давно не использованных городов
+        assertNull(cacheManager.getResponse("City0"));
+    }
+
+    private static WeatherData observation(String city) {
+        WeatherData.Weather weather = new WeatherData.Weather();
+        weather.setId(800);
+        weather.setMain("Clear");
+        weather.setDescription("clear sky");
+        WeatherData.Main main = new WeatherData.Main();
+        main.setTemp(284.2);
+        WeatherData data = new WeatherData();
+        data.setName(city);
+        data.setWeather(List.of(weather));
+        data.setMain(main);
+        data.setDatetime(1_700_000_000L);
+        return data;
+    }
+}
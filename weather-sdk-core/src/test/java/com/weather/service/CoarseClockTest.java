@@ -0,0 +1,51 @@
+package com.weather.service;
+
+import com.weather.model.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoarseClockTest {
+
+    private static final long MINUTE = 60_000;
+
+    @Test
+    void cacheExpiresByInjectedTime() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        CacheManager cacheManager = new CacheManager(10, 10, Long.MAX_VALUE, false, CoarseClock.of(now::get));
+        WeatherData data = new WeatherData();
+        data.setName("London");
+        data.setTimestamp(now.get());
+        cacheManager.put("London", data);
+
+        now.addAndGet(9 * MINUTE);
+        assertNotNull(cacheManager.get("London"));
+        now.addAndGet(MINUTE);
+        assertNull(cacheManager.get("London"));
+    }
+
+    @Test
+    void acceleratedClockRunsFaster() throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            CoarseClock clock = CoarseClock.start(scheduler, 10, 60);
+            long realStart = System.currentTimeMillis();
+            long sdkStart = clock.currentTimeMillis();
+            Thread.sleep(500);
+            long real = System.currentTimeMillis() - realStart;
+            long sdk = clock.currentTimeMillis() - sdkStart;
+
+            assertTrue(sdk >= real * 30, "SDK clock advanced " + sdk + " ms in " + real + " ms");
+            assertEquals(500, clock.toRealMillis(30_000));
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.weather.service;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.weather.model.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Потоковый разбор должен давать ту же модель, что и ObjectMapper.readValue:
+ * на записанных ответах API и на случайных ответах с пропусками, null, числами в строках и лишними полями
+ */
+class WeatherDataDecoderTest {
+
+    private static final String[] RECORDED = {"london.json", "tokyo-rain.json", "reykjavik-snow.json", "sparse.json"};
+    private static final int RANDOM_PAYLOADS = 5_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Сравнение по полям: вспомогательные геттеры модели не рассчитаны на null внутри списка weather
+    private final ObjectMapper fieldMapper = new ObjectMapper()
+            .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+            .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Test
+    void recordedPayloadsMatchObjectMapper() throws IOException {
+        for (String name : RECORDED) {
+            assertEquivalent(resource(name), name);
+        }
+    }
+
+    @Test
+    void randomPayloadsMatchObjectMapper() throws IOException {
+        Random random = new Random(7);
+        for (int i = 0; i < RANDOM_PAYLOADS; i++) {
+            String body = randomPayload(random);
+            assertEquivalent(body, body);
+        }
+    }
+
+    @Test
+    void malformedPayloadsAreRejectedLikeObjectMapper() {
+        String[] malformed = {
+                "[]",
+                "{\"main\":[1,2]}",
+                "{\"weather\":{\"id\":1}}",
+                "{\"visibility\":\"far\"}",
+                "{\"dt\":\"12.5\"}",
+                "{\"name\":\"London\""
+        };
+        for (String body : malformed) {
+            assertThrows(IOException.class, () -> objectMapper.readValue(body, WeatherData.class), body);
+            assertThrows(IOException.class, () -> WeatherDataDecoder.decode(jsonFactory, body), body);
+        }
+    }
+
+    private void assertEquivalent(String body, String label) throws IOException {
+        WeatherData expected = objectMapper.readValue(body, WeatherData.class);
+        WeatherData actual = WeatherDataDecoder.decode(jsonFactory, body);
+        assertNotNull(actual, label);
+        assertEquals(tree(expected), tree(actual), label);
+    }
+
+    /**
+     * Модель как дерево JSON без внутренней отметки времени, которая у каждого экземпляра своя
+     */
+    private JsonNode tree(WeatherData data) {
+        ObjectNode node = fieldMapper.valueToTree(data);
+        node.remove("timestamp");
+        return node;
+    }
+
+    private static String resource(String name) throws IOException {
+        try (InputStream in = WeatherDataDecoderTest.class.getResourceAsStream("/payloads/" + name)) {
+            assertNotNull(in, name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String randomPayload(Random random) {
+        List<String> fields = new ArrayList<>();
+        maybe(random, fields, "weather", () -> randomWeatherList(random));
+        maybe(random, fields, "main", () -> randomObject(random,
+                field("temp", randomDouble(random)), field("feels_like", randomDouble(random)),
+                field("pressure", randomInteger(random)), field("humidity", randomInteger(random))));
+        maybe(random, fields, "visibility", () -> randomInteger(random));
+        maybe(random, fields, "wind", () -> randomObject(random,
+                field("speed", randomDouble(random)), field("deg", randomInteger(random))));
+        maybe(random, fields, "dt", () -> randomInteger(random));
+        maybe(random, fields, "sys", () -> randomObject(random,
+                field("sunrise", randomInteger(random)), field("sunset", randomInteger(random)),
+                field("country", randomString(random)), field("type", randomInteger(random))));
+        maybe(random, fields, "timezone", () -> randomInteger(random));
+        maybe(random, fields, "name", () -> randomString(random));
+        maybe(random, fields, "coord", () -> "{\"lon\":" + random.nextDouble() + ",\"lat\":[" + random.nextInt() + "]}");
+        maybe(random, fields, "clouds", () -> "{\"all\":{\"nested\":[null,true,\"x\"]}}");
+        maybe(random, fields, "cod", () -> randomInteger(random));
+        Collections.shuffle(fields, random);
+        return "{" + String.join(",", fields) + "}";
+    }
+
+    private static String randomWeatherList(Random random) {
+        if (random.nextInt(10) == 0) {
+            return "null";
+        }
+        List<String> items = new ArrayList<>();
+        int count = random.nextInt(3);
+        for (int i = 0; i < count; i++) {
+            items.add(random.nextInt(10) == 0 ? "null" : randomObject(random,
+                    field("id", randomInteger(random)), field("main", randomString(random)),
+                    field("description", randomString(random)), field("icon", randomString(random))));
+        }
+        return "[" + String.join(",", items) + "]";
+    }
+
+    private static String randomObject(Random random, String... candidates) {
+        if (random.nextInt(10) == 0) {
+            return "null";
+        }
+        List<String> fields = new ArrayList<>();
+        for (String candidate : candidates) {
+            if (random.nextInt(4) != 0) {
+                fields.add(candidate);
+            }
+        }
+        Collections.shuffle(fields, random);
+        return "{" + String.join(",", fields) + "}";
+    }
+
+    private static void maybe(Random random, List<String> fields, String name, Supplier<String> value) {
+        if (random.nextInt(5) != 0) {
+            fields.add(field(name, value.get()));
+        }
+    }
+
+    private static String field(String name, String value) {
+        return "\"" + name + "\":" + value;
+    }
+
+    /**
+     * Целое в разных представлениях, которые Jackson приводит к целому полю: число, дробное, строка
+     */
+    private static String randomInteger(Random random) {
+        int value = random.nextInt(2_000_000_000) - 1_000_000_000;
+        return switch (random.nextInt(5)) {
+            case 0 -> "null";
+            case 1 -> value + "." + random.nextInt(10);
+            case 2 -> "\"" + value + "\"";
+            default -> Integer.toString(value);
+        };
+    }
+
+    private static String randomDouble(Random random) {
+        double value = (random.nextDouble() - 0.5) * 1000;
+        return switch (random.nextInt(6)) {
+            case 0 -> "null";
+            case 1 -> "\"" + value + "\"";
+            case 2 -> Integer.toString((int) value);
+            case 3 -> String.format(Locale.ROOT, "%.3e", value);
+            default -> Double.toString(value);
+        };
+    }
+
+    private static String randomString(Random random) {
+        return switch (random.nextInt(6)) {
+            case 0 -> "null";
+            case 1 -> Integer.toString(random.nextInt(1000));
+            case 2 -> "\"Zürich \\\"Altstadt\\\" \\u00e9\\n\"";
+            case 3 -> "\"\"";
+            default -> "\"city-" + random.nextInt(100) + "\"";
+        };
+    }
+}
@@ -0,0 +1,96 @@
+package com.weather.service;
+
+import com.weather.config.OperatingMode;
+import com.weather.config.Units;
+import com.weather.dto.WeatherResponse;
+import com.weather.model.WeatherData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ключи кэша по id не пересекаются с названиями: название с префиксом "id:" отклоняется до кэша
+ * и до запроса к API. Клиента API нет, поэтому любой запрос к upstream завершил бы тест ошибкой.
+ */
+class WeatherProviderCityKeyTest {
+
+    private static final long LONDON_ID = 2643743;
+
+    private CacheManager cacheManager;
+    private WeatherProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new CacheManager(10, 60);
+        provider = new WeatherProvider("test-key", OperatingMode.ON_DEMAND, null, cacheManager);
+        cacheManager.put("London", observation("London"));
+        cacheManager.put("id:" + LONDON_ID, observation("London"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        provider.shutdown();
+    }
+
+    @Test
+    void namesWithIdPrefixAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> provider.getWeather("id:abc"));
+        assertThrows(IllegalArgumentException.class, () -> provider.getWeather(" id:" + LONDON_ID));
+        assertThrows(IllegalArgumentException.class, () -> provider.getCachedWeather("ID:" + LONDON_ID));
+        assertThrows(IllegalArgumentException.class,
+                () -> provider.getWeatherAsync("id:" + LONDON_ID, Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class, () -> provider.getForecast("id:" + LONDON_ID));
+    }
+
+    @Test
+    void idLookupsUseIdKeys() {
+        assertNotNull(provider.getCachedWeatherById(LONDON_ID, Units.STANDARD, null));
+        WeatherResponse response = provider.getWeatherById(LONDON_ID, Units.METRIC, null, Duration.ofSeconds(1));
+        assertEquals("London", response.getName());
+    }
+
+    @Test
+    void batchRejectsOnlyTheInvalidName() throws Exception {
+        Map<String, CompletableFuture<WeatherResponse>> results = provider.getWeatherBatchAsync(
+                List.of("London", "id:" + LONDON_ID), Units.STANDARD, null, Duration.ofSeconds(1));
+
+        assertEquals("London", results.get("London").get().getName());
+        CompletableFuture<WeatherResponse> rejected = results.get("id:" + LONDON_ID);
+        assertTrue(rejected.isCompletedExceptionally());
+        ExecutionException error = assertThrows(ExecutionException.class, rejected::get);
+        assertInstanceOf(IllegalArgumentException.class, error.getCause());
+    }
+
+    private static WeatherData observation(String city) {
+        WeatherData.Weather weather = new WeatherData.Weather();
+        weather.setId(800);
+        weather.setMain("Clear");
+        weather.setDescription("clear sky");
+        WeatherData.Main main = new WeatherData.Main();
+        main.setTemp(284.2);
+        WeatherData.Wind wind = new WeatherData.Wind();
+        wind.setSpeed(4.1);
+
+        WeatherData data = new WeatherData();
+        data.setName(city);
+        data.setWeather(List.of(weather));
+        data.setMain(main);
+        data.setWind(wind);
+        data.setVisibility(10000);
+        data.setDatetime(1_700_000_000L);
+        data.setTimezone(0);
+        return data;
+    }
+}
@@ -0,0 +1,84 @@
+package com.weather.service;
+
+import com.weather.config.OperatingMode;
+import com.weather.config.Units;
+import com.weather.exception.DeadlineExceededException;
+import com.weather.model.WeatherData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Таймер дедлайна живёт на общем планировщике и снимается, как только запрос завершился
+ */
+class WeatherProviderDeadlineTest {
+
+    private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+    private WeatherProvider provider;
+
+    @AfterEach
+    void tearDown() {
+        if (provider != null) {
+            provider.shutdown();
+        }
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void completedFetchCancelsDeadlineTimer() {
+        provider = provider(new ApiClient("test-key", "http://localhost") {
+            @Override
+            public CompletableFuture<WeatherData> getWeatherDataAsync(String cityName, Duration timeout) {
+                return CompletableFuture.completedFuture(observation(cityName));
+            }
+        });
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("City" + i, provider.getWeather("City" + i, Units.STANDARD, null, Duration.ofMinutes(10))
+                    .getName());
+        }
+        // Все 100 таймеров поставлены в общий планировщик и отменены
+        assertEquals(100, scheduler.getQueue().size());
+        assertTrue(scheduler.getQueue().stream().allMatch(task -> ((Future<?>) task).isCancelled()));
+    }
+
+    @Test
+    void slowFetchEndsWithDeadlineExceeded() {
+        provider = provider(new ApiClient("test-key", "http://localhost") {
+            @Override
+            public CompletableFuture<WeatherData> getWeatherDataAsync(String cityName, Duration timeout) {
+                return new CompletableFuture<>();
+            }
+        });
+
+        assertThrows(DeadlineExceededException.class,
+                () -> provider.getWeather("London", Units.STANDARD, null, Duration.ofMillis(50)));
+    }
+
+    private WeatherProvider provider(ApiClient apiClient) {
+        return new WeatherProvider("test-key", OperatingMode.ON_DEMAND, apiClient, new CacheManager(200, 60),
+                new NegativeCache(0, 0), new ForecastCache(10, 60), new ObservationHistory(0, 0),
+                new PopularCities(0), scheduler, Runnable::run, new UpstreamDispatcher(8, 1000), 10,
+                new TraceSampler(0));
+    }
+
+    private static WeatherData observation(String city) {
+        WeatherData.Main main = new WeatherData.Main();
+        main.setTemp(284.2);
+        WeatherData data = new WeatherData();
+        data.setName(city);
+        data.setWeather(List.of());
+        data.setMain(main);
+        data.setDatetime(1_700_000_000L);
+        return data;
+    }
+}
@@ -0,0 +1,100 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузка для сравнения потоков обработки: часть клиентов читает уже закэшированный город,
+ * остальные запрашивают каждый раз новый и упираются в медленный upstream.
+ * Печатает задержку попаданий под этой нагрузкой промахов.
+ * Запуск без сборки: java scripts/LoadBench.java baseUrl seconds hitClients missClients
+ */
+public class LoadBench {
+
+    private static final String HOT_CITY = "London";
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 30;
+        int hitClients = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        int missClients = args.length > 3 ? Integer.parseInt(args[3]) : 400;
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        if (send(client, baseUrl, HOT_CITY) != 200) {
+            System.err.println("Warm-up request for " + HOT_CITY + " failed");
+            System.exit(1);
+        }
+
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<long[]> hitLatencies = new ArrayList<>();
+        AtomicLong missOk = new AtomicLong();
+        AtomicLong missRejected = new AtomicLong();
+        AtomicLong missFailed = new AtomicLong();
+        AtomicLong missSequence = new AtomicLong();
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < missClients; i++) {
+                clients.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        int status = send(client, baseUrl, "Miss" + missSequence.incrementAndGet());
+                        (status == 200 ? missOk : status == 503 ? missRejected : missFailed).incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            for (int i = 0; i < hitClients; i++) {
+                long[] latencies = new long[1 << 20];
+                hitLatencies.add(latencies);
+                clients.submit(() -> {
+                    int count = 0;
+                    while (System.nanoTime() < deadline && count < latencies.length - 1) {
+                        long start = System.nanoTime();
+                        if (send(client, baseUrl, HOT_CITY) == 200) {
+                            latencies[++count] = System.nanoTime() - start;
+                        }
+                    }
+                    latencies[0] = count;
+                    return null;
+                });
+            }
+        }
+
+        long[] all = hitLatencies.stream()
+                .flatMapToLong(latencies -> Arrays.stream(latencies, 1, (int) latencies[0] + 1))
+                .sorted()
+                .toArray();
+        System.out.printf("hits=%d (%.0f/s) p50=%.1fms p99=%.1fms max=%.1fms | misses ok=%d rejected=%d failed=%d%n",
+                all.length, all.length / (double) seconds,
+                percentile(all, 0.50), percentile(all, 0.99), percentile(all, 1.0),
+                missOk.get(), missRejected.get(), missFailed.get());
+    }
+
+    private static int send(HttpClient client, String baseUrl, String city) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/weather?city=" + city))
+                .timeout(Duration.ofSeconds(30))
+                .build();
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+}
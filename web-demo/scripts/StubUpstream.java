@@ -0,0 +1,55 @@
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Заглушка OpenWeatherMap для замеров: на любой /weather?q=... отвечает одним и тем же наблюдением,
+ * при заданной задержке - не раньше чем через latencyMs. Каждый запрос обслуживается своим виртуальным потоком.
+ * Запуск без сборки: java scripts/StubUpstream.java [port] [latencyMs]
+ */
+public class StubUpstream {
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 18080;
+        long latencyMs = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", exchange -> {
+            if (latencyMs > 0) {
+                try {
+                    Thread.sleep(latencyMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            String city = "London";
+            String query = exchange.getRequestURI().getRawQuery();
+            if (query != null) {
+                for (String param : query.split("&")) {
+                    if (param.startsWith("q=")) {
+                        city = URLDecoder.decode(param.substring(2), StandardCharsets.UTF_8);
+                    }
+                }
+            }
+            long now = System.currentTimeMillis() / 1000;
+            byte[] body = ("{\"weather\":[{\"id\":800,\"main\":\"Clear\",\"description\":\"clear sky\"}],"
+                    + "\"main\":{\"temp\":285.15,\"feels_like\":284.2},\"visibility\":10000,"
+                    + "\"wind\":{\"speed\":3.6},\"dt\":" + now + ",\"sys\":{\"sunrise\":" + (now - 20000)
+                    + ",\"sunset\":" + (now + 20000) + "},\"timezone\":0,\"name\":\"" + city + "\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        System.out.println("Stub upstream listening on http://127.0.0.1:" + port
+                + (latencyMs > 0 ? " with " + latencyMs + " ms latency" : ""));
+    }
+}
@@ -0,0 +1,156 @@
+#!/usr/bin/env bash
+# Время от запуска JVM до первого успешного ответа /weather на локальной заглушке upstream.
+#
+#   scripts/startup-bench.sh bench [runs]   замер без архива и, если он есть, с архивом AppCDS
+#   scripts/startup-bench.sh train          учебный запуск и запись архива AppCDS (профиль -Pappcds)
+#
+# Переменные: JAR, CDS_ARCHIVE, JAVA, JAVA_OPTS, STUB_PORT, APP_PORT
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+JAR=${JAR:-target/weather-sdk-web-demo-1.0.0-jar-with-dependencies.jar}
+CDS_ARCHIVE=${CDS_ARCHIVE:-target/web-demo.jsa}
+JAVA=${JAVA:-java}
+JAVA_OPTS=${JAVA_OPTS:-}
+STUB_PORT=${STUB_PORT:-18080}
+APP_PORT=${APP_PORT:-8080}
+WEATHER_URL="http://localhost:${APP_PORT}/weather?city=London"
+
+if [[ ! -f "$JAR" ]]; then
+    echo "Jar not found: $JAR (run mvn package first)" >&2
+    exit 1
+fi
+
+WORK_DIR=$(mktemp -d)
+STUB_PID=""
+APP_PID=""
+
+cleanup() {
+    [[ -n "$APP_PID" ]] && kill "$APP_PID" 2>/dev/null || true
+    [[ -n "$STUB_PID" ]] && kill "$STUB_PID" 2>/dev/null || true
+    rm -rf "$WORK_DIR"
+}
+trap cleanup EXIT
+
+# Настройки приложения поверх встроенных: заглушка вместо OpenWeatherMap, без прогрева и опроса
+cat > "$WORK_DIR/bench.properties" <<PROPS
+openweather.api.key=startup_bench_key
+openweather.api.keys=
+openweather.api.url=http://127.0.0.1:${STUB_PORT}
+sdk.operating.mode=ON_DEMAND
+sdk.prewarm.cities=
+sdk.prewarm.top.cities=0
+sdk.config.reload.interval.seconds=0
+PROPS
+
+now_ms() {
+    echo $(( $(date +%s%N) / 1000000 ))
+}
+
+wait_for() {
+    local url=$1 timeout_ms=$2 start
+    start=$(now_ms)
+    until curl -sf -o /dev/null "$url"; do
+        if (( $(now_ms) - start > timeout_ms )); then
+            return 1
+        fi
+        sleep 0.01
+    done
+}
+
+start_stub() {
+    "$JAVA" scripts/StubUpstream.java "$STUB_PORT" > "$WORK_DIR/stub.log" 2>&1 &
+    STUB_PID=$!
+    if ! wait_for "http://127.0.0.1:${STUB_PORT}/weather?q=London" 30000; then
+        echo "Stub upstream did not start" >&2
+        exit 1
+    fi
+}
+
+stop_app() {
+    kill -TERM "$APP_PID" 2>/dev/null || true
+    wait "$APP_PID" 2>/dev/null || true
+    APP_PID=""
+}
+
+# Один запуск: печатает миллисекунды от старта JVM до первого ответа 200 на /weather
+run_once() {
+    local start elapsed
+    start=$(now_ms)
+    # shellcheck disable=SC2086
+    "$JAVA" $JAVA_OPTS "$@" -Dsdk.config.file="$WORK_DIR/bench.properties" -jar "$JAR" \
+        > "$WORK_DIR/app.log" 2>&1 &
+    APP_PID=$!
+    if ! wait_for "$WEATHER_URL" 60000; then
+        echo "Application did not answer /weather, see log:" >&2
+        tail -20 "$WORK_DIR/app.log" >&2
+        exit 1
+    fi
+    elapsed=$(( $(now_ms) - start ))
+    stop_app
+    echo "$elapsed"
+}
+
+bench() {
+    local label=$1 runs=$2
+    shift 2
+    local results=()
+    run_once "$@" > /dev/null # прогрев файлового кэша ОС
+    for ((i = 0; i < runs; i++)); do
+        results+=("$(run_once "$@")")
+    done
+    local sorted
+    sorted=$(printf '%s\n' "${results[@]}" | sort -n)
+    printf '%-10s runs=%d min=%dms median=%dms max=%dms\n' "$label" "$runs" \
+        "$(echo "$sorted" | head -1)" \
+        "$(echo "$sorted" | sed -n "$(( (runs + 1) / 2 ))p")" \
+        "$(echo "$sorted" | tail -1)"
+}
+
+train() {
+    rm -f "$CDS_ARCHIVE"
+    # shellcheck disable=SC2086
+    "$JAVA" $JAVA_OPTS -XX:ArchiveClassesAtExit="$CDS_ARCHIVE" \
+        -Dsdk.config.file="$WORK_DIR/bench.properties" -jar "$JAR" > "$WORK_DIR/app.log" 2>&1 &
+    APP_PID=$!
+    if ! wait_for "$WEATHER_URL" 60000; then
+        echo "Application did not answer /weather during training, see log:" >&2
+        tail -20 "$WORK_DIR/app.log" >&2
+        exit 1
+    fi
+    # Загружаем классы и остальных обработчиков, чтобы они тоже попали в архив
+    curl -sf -o /dev/null "http://localhost:${APP_PORT}/weather?city=Paris&units=metric&lang=de" || true
+    curl -sf -o /dev/null "http://localhost:${APP_PORT}/weather/batch?city=London&city=Berlin" || true
+    curl -sf -o /dev/null "http://localhost:${APP_PORT}/weather/cache/info" || true
+    curl -s -o /dev/null "http://localhost:${APP_PORT}/ready" || true
+    # Архив пишется при штатном завершении JVM
+    stop_app
+    if [[ ! -f "$CDS_ARCHIVE" ]]; then
+        echo "AppCDS archive was not written, see log:" >&2
+        tail -20 "$WORK_DIR/app.log" >&2
+        exit 1
+    fi
+    echo "AppCDS archive written to $CDS_ARCHIVE ($(du -h "$CDS_ARCHIVE" | cut -f1))"
+}
+
+MODE=${1:-bench}
+start_stub
+case "$MODE" in
+    train)
+        train
+        ;;
+    bench)
+        RUNS=${2:-5}
+        bench "default" "$RUNS"
+        if [[ -f "$CDS_ARCHIVE" ]]; then
+            bench "appcds" "$RUNS" -XX:SharedArchiveFile="$CDS_ARCHIVE"
+        else
+            echo "No AppCDS archive at $CDS_ARCHIVE, build it with: mvn -Pappcds package"
+        fi
+        ;;
+    *)
+        echo "Usage: $0 bench [runs] | train" >&2
+        exit 1
+        ;;
+esac
@@ -0,0 +1,96 @@
+#!/usr/bin/env bash
+# Задержка попаданий в кэш под нагрузкой промахов на платформенных и на виртуальных потоках.
+# Заглушка upstream отвечает с искусственной задержкой, промахи держат поток обработки всё это время.
+#
+#   scripts/thread-bench.sh [seconds]
+#
+# Переменные: JAR, JAVA, JAVA_OPTS, STUB_PORT, APP_PORT, STUB_LATENCY_MS, HIT_CLIENTS, MISS_CLIENTS,
+#             UPSTREAM_MAX_CONCURRENT
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+JAR=${JAR:-target/weather-sdk-web-demo-1.0.0-jar-with-dependencies.jar}
+JAVA=${JAVA:-java}
+JAVA_OPTS=${JAVA_OPTS:-}
+STUB_PORT=${STUB_PORT:-18080}
+APP_PORT=${APP_PORT:-8080}
+STUB_LATENCY_MS=${STUB_LATENCY_MS:-300}
+HIT_CLIENTS=${HIT_CLIENTS:-16}
+MISS_CLIENTS=${MISS_CLIENTS:-400}
+UPSTREAM_MAX_CONCURRENT=${UPSTREAM_MAX_CONCURRENT:-64}
+SECONDS_PER_RUN=${1:-30}
+
+if [[ ! -f "$JAR" ]]; then
+    echo "Jar not found: $JAR (run mvn package first)" >&2
+    exit 1
+fi
+
+WORK_DIR=$(mktemp -d)
+STUB_PID=""
+APP_PID=""
+
+cleanup() {
+    [[ -n "$APP_PID" ]] && kill "$APP_PID" 2>/dev/null || true
+    [[ -n "$STUB_PID" ]] && kill "$STUB_PID" 2>/dev/null || true
+    rm -rf "$WORK_DIR"
+}
+trap cleanup EXIT
+
+# Настройки поверх встроенных: заглушка вместо OpenWeatherMap, кэш вмещает горячий город, промахи не отсекаются
+write_properties() {
+    local virtual_threads=$1
+    cat > "$WORK_DIR/bench.properties" <<PROPS
+openweather.api.key=thread_bench_key
+openweather.api.keys=
+openweather.api.url=http://127.0.0.1:${STUB_PORT}
+sdk.operating.mode=ON_DEMAND
+sdk.cache.capacity=1000
+sdk.prewarm.cities=
+sdk.prewarm.top.cities=0
+sdk.config.reload.interval.seconds=0
+sdk.upstream.max.concurrent=${UPSTREAM_MAX_CONCURRENT}
+sdk.virtual.threads.enabled=${virtual_threads}
+web.admission.initial.limit=0
+PROPS
+}
+
+wait_for() {
+    local url=$1 attempts=$2
+    for ((i = 0; i < attempts; i++)); do
+        if curl -sf -o /dev/null "$url"; then
+            return 0
+        fi
+        sleep 0.1
+    done
+    return 1
+}
+
+run() {
+    local label=$1 virtual_threads=$2
+    write_properties "$virtual_threads"
+    # shellcheck disable=SC2086
+    "$JAVA" $JAVA_OPTS -Dsdk.config.file="$WORK_DIR/bench.properties" -jar "$JAR" > "$WORK_DIR/app.log" 2>&1 &
+    APP_PID=$!
+    if ! wait_for "http://localhost:${APP_PORT}/ready" 600; then
+        echo "Application did not become ready, see log:" >&2
+        tail -20 "$WORK_DIR/app.log" >&2
+        exit 1
+    fi
+    printf '%-9s ' "$label"
+    "$JAVA" scripts/LoadBench.java "http://localhost:${APP_PORT}" "$SECONDS_PER_RUN" "$HIT_CLIENTS" "$MISS_CLIENTS"
+    kill -TERM "$APP_PID" 2>/dev/null || true
+    wait "$APP_PID" 2>/dev/null || true
+    APP_PID=""
+}
+
+"$JAVA" scripts/StubUpstream.java "$STUB_PORT" "$STUB_LATENCY_MS" > "$WORK_DIR/stub.log" 2>&1 &
+STUB_PID=$!
+if ! wait_for "http://127.0.0.1:${STUB_PORT}/weather?q=London" 300; then
+    echo "Stub upstream did not start" >&2
+    exit 1
+fi
+
+echo "upstream latency ${STUB_LATENCY_MS} ms, ${HIT_CLIENTS} hit clients, ${MISS_CLIENTS} miss clients, ${SECONDS_PER_RUN} s per run"
+run "platform" false
+run "virtual" true
@@ -0,0 +1,116 @@
+package com.weather;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Адаптивный предел одновременных промахов кэша (AIMD).
+ * <p>
+ * Промах занимает место на время запроса к API. Когда мест нет, запрос сразу отклоняется,
+ * а не ждёт потока. Предел растёт на 1/limit с каждым успешным быстрым промахом, пока он
+ * используется хотя бы наполовину, и умножается на BACKOFF_RATIO, когда промах завершился
+ * перегрузкой upstream (дедлайн, лимит API, сетевая ошибка) или дольше цели по задержке.
+ * Уменьшение не чаще раза за сглаженную задержку промаха, чтобы пачка медленных ответов
+ * одного периода не обрушила предел до минимума.
+ */
+public class AdmissionLimiter {
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double LATENCY_SMOOTHING = 0.2;
+    private static final int MIN_LIMIT = 1;
+
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private final boolean enabled;
+    private double limit;
+    private int inFlight;
+    private double latencyNanos;
+    private long lastDecreaseNanos;
+    private long admitted;
+    private long rejected;
+    private long decreases;
+
+    /**
+     * @param initialLimit        начальный предел; 0 - пропускать все промахи
+     * @param maxLimit            верхняя граница предела
+     * @param latencyTargetMillis промах дольше этого времени уменьшает предел
+     */
+    public AdmissionLimiter(int initialLimit, int maxLimit, long latencyTargetMillis) {
+        this.enabled = initialLimit > 0;
+        this.maxLimit = Math.max(MIN_LIMIT, Math.max(initialLimit, maxLimit));
+        this.limit = Math.max(MIN_LIMIT, initialLimit);
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, latencyTargetMillis));
+        this.lastDecreaseNanos = System.nanoTime();
+    }
+
+    /**
+     * Занимает место для промаха; false - промах нужно отклонить
+     */
+    public synchronized boolean tryAcquire() {
+        if (enabled && inFlight >= (int) limit) {
+            rejected++;
+            return false;
+        }
+        inFlight++;
+        admitted++;
+        return true;
+    }
+
+    /**
+     * Освобождает место и подстраивает предел по исходу промаха
+     *
+     * @param elapsedNanos длительность промаха
+     * @param overloaded   промах завершился признаком перегрузки upstream
+     */
+    public synchronized void release(long elapsedNanos, boolean overloaded) {
+        int used = inFlight--;
+        latencyNanos = latencyNanos == 0 ? elapsedNanos
+                : latencyNanos + LATENCY_SMOOTHING * (elapsedNanos - latencyNanos);
+
+        long now = System.nanoTime();
+        if (overloaded || elapsedNanos > latencyTargetNanos) {
+            if (now - lastDecreaseNanos >= latencyNanos) {
+                limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+                lastDecreaseNanos = now;
+                decreases++;
+            }
+        } else if (used * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    /**
+     * Через сколько секунд стоит повторить отклонённый запрос: сглаженная задержка промаха, не меньше секунды
+     */
+    public synchronized long retryAfterSeconds() {
+        return Math.max(1, (long) Math.ceil(latencyNanos / 1_000_000_000.0));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized long getAdmitted() {
+        return admitted;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /** Сколько раз предел уменьшался из-за перегрузки */
+    public synchronized long getDecreases() {
+        return decreases;
+    }
+
+    /** Сглаженная длительность промаха */
+    public synchronized double getLatencyMillis() {
+        return latencyNanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,92 @@
+package com.weather;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.weather.factory.WeatherProviderFactory;
+import com.weather.model.CityInfo;
+import com.weather.service.CityCatalog;
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Подсказки городов по префиксу названия: /cities/suggest?prefix=lon&limit=10.
+ * Поиск идёт по отображённому в память каталогу, без запросов к API. Регистр и диакритика
+ * не учитываются; id из ответа можно передать в /weather?id=.
+ */
+public class CityController {
+    private static final Logger logger = LoggerFactory.getLogger(CityController.class);
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final int DEFAULT_LIMIT = 10;
+    private static final int MAX_LIMIT = 100;
+
+    private final WeatherProviderFactory factory;
+
+    public CityController() {
+        this.factory = WeatherProviderFactory.getInstance();
+        logger.info("CityController initialized");
+    }
+
+    public void suggest(Context ctx) {
+        String prefix = ctx.queryParam("prefix");
+        if (prefix == null || prefix.trim().isEmpty()) {
+            ctx.status(HttpStatus.BAD_REQUEST).json(Map.of("error", "Prefix parameter is required"));
+            return;
+        }
+
+        int limit = DEFAULT_LIMIT;
+        String limitParam = ctx.queryParam("limit");
+        if (limitParam != null) {
+            try {
+                limit = Integer.parseInt(limitParam.trim());
+            } catch (NumberFormatException e) {
+                limit = 0;
+            }
+            if (limit <= 0 || limit > MAX_LIMIT) {
+                ctx.status(HttpStatus.BAD_REQUEST)
+                        .json(Map.of("error", "Limit must be between 1 and " + MAX_LIMIT));
+                return;
+            }
+        }
+
+        CityCatalog catalog = factory.getCityCatalog();
+        if (catalog == null) {
+            ctx.status(HttpStatus.SERVICE_UNAVAILABLE).json(Map.of("error", "City catalog is not configured"));
+            return;
+        }
+
+        try {
+            ctx.contentType("application/json").result(encode(catalog.suggest(prefix, limit)));
+        } catch (IOException e) {
+            logger.error("Failed to encode city suggestions for prefix {}: {}", prefix, e.getMessage());
+            ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(Map.of("error", "Internal server error"));
+        }
+    }
+
+    private byte[] encode(List<CityInfo> cities) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + cities.size() * 96);
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.writeStartArray();
+            for (CityInfo city : cities) {
+                generator.writeStartObject();
+                generator.writeNumberField("id", city.getId());
+                generator.writeStringField("name", city.getName());
+                if (!city.getState().isEmpty()) {
+                    generator.writeStringField("state", city.getState());
+                }
+                generator.writeStringField("country", city.getCountry());
+                generator.writeNumberField("lat", city.getLat());
+                generator.writeNumberField("lon", city.getLon());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        return out.toByteArray();
+    }
+}
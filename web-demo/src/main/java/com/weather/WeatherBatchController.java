@@ -0,0 +1,283 @@
+package com.weather;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weather.config.Units;
+import com.weather.config.WeatherDescriptions;
+import com.weather.dto.WeatherResponse;
+import com.weather.dto.WeatherResponseEncoder;
+import com.weather.exception.ApiCallLimitExceededException;
+import com.weather.exception.CityNotFoundException;
+import com.weather.exception.InvalidApiKeyException;
+import com.weather.exception.WeatherSDKException;
+import com.weather.factory.WeatherProviderFactory;
+import com.weather.service.WeatherProvider;
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пакетный запрос погоды: /weather/batch?city=London&city=Paris&lang=ru (или POST с JSON-массивом городов).
+ * <p>
+ * Ответ - NDJSON, по строке на город, пишется прямо в поток ответа. Сначала отдаются попадания в кэш,
+ * затем промахи по мере готовности. Одновременных запросов к API на один пакет не больше MAX_FETCHES_IN_FLIGHT,
+ * и каждый промах проходит общий с /weather контроль допуска: отклонённый город получает строку со статусом 503.
+ * Строки пишутся потоковым JsonGenerator через WeatherResponseEncoder, без промежуточных Map и рефлексии.
+ */
+public class WeatherBatchController {
+    private static final Logger logger = LoggerFactory.getLogger(WeatherBatchController.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final int MAX_BATCH_CITIES = 100;
+    private static final int MAX_FETCHES_IN_FLIGHT = 4;
+    private static final int FETCH_THREADS = 16;
+
+    private final WeatherProviderFactory factory;
+    private final AdmissionLimiter admission;
+    private final ExecutorService fetchExecutor;
+
+    /**
+     * @param admission контроль допуска промахов, общий с /weather
+     */
+    public WeatherBatchController(AdmissionLimiter admission) {
+        this.factory = WeatherProviderFactory.getInstance();
+        this.admission = admission;
+        if (factory.getConfig().isVirtualThreadsEnabled()) {
+            this.fetchExecutor = Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("BatchFetch-", 0).factory());
+        } else {
+            AtomicInteger counter = new AtomicInteger();
+            this.fetchExecutor = Executors.newFixedThreadPool(FETCH_THREADS, r -> {
+                Thread thread = new Thread(r, "BatchFetch-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        logger.info("WeatherBatchController initialized");
+    }
+
+    public void getWeatherBatch(Context ctx) throws IOException {
+        Set<String> cities;
+        try {
+            cities = parseCities(ctx);
+        } catch (IOException e) {
+            ctx.status(HttpStatus.BAD_REQUEST).json(createErrorResponse("Body must be a JSON array of city names"));
+            return;
+        }
+
+        Units units;
+        try {
+            units = Units.fromString(ctx.queryParam("units"));
+        } catch (IllegalArgumentException e) {
+            ctx.status(HttpStatus.BAD_REQUEST)
+                    .json(createErrorResponse("Units must be one of: standard, metric, imperial"));
+            return;
+        }
+
+        String language = ctx.queryParam("lang");
+        try {
+            WeatherDescriptions.getInstance().languageIndex(language);
+        } catch (IllegalArgumentException e) {
+            ctx.status(HttpStatus.BAD_REQUEST).json(createErrorResponse(
+                    "Lang must be one of: " + String.join(", ", WeatherDescriptions.getInstance().getLanguages())));
+            return;
+        }
+
+        if (cities.isEmpty()) {
+            ctx.status(HttpStatus.BAD_REQUEST).json(createErrorResponse("At least one city is required"));
+            return;
+        }
+        if (cities.size() > MAX_BATCH_CITIES) {
+            ctx.status(HttpStatus.BAD_REQUEST)
+                    .json(createErrorResponse("Too many cities, maximum is " + MAX_BATCH_CITIES));
+            return;
+        }
+
+        WeatherProvider weatherProvider = factory.getWeatherProvider();
+        ctx.contentType("application/x-ndjson");
+        OutputStream out = ctx.res().getOutputStream();
+        try (JsonGenerator generator = createGenerator(out)) {
+            // Попадания в кэш отдаём сразу одним сбросом буфера
+            List<String> misses = new ArrayList<>();
+            for (String city : cities) {
+                WeatherResponse cached;
+                try {
+                    cached = weatherProvider.getCachedWeather(city, units, language);
+                } catch (IllegalArgumentException e) {
+                    // Недопустимое название отклоняется только в своей строке
+                    writeLine(generator, BatchLine.error(city, statusFor(e), e.getMessage()));
+                    continue;
+                }
+                if (cached != null) {
+                    writeLine(generator, BatchLine.success(city, cached));
+                } else {
+                    misses.add(city);
+                }
+            }
+            generator.flush();
+
+            if (!misses.isEmpty()) {
+                streamMisses(weatherProvider, misses, units, language, generator);
+            }
+        }
+    }
+
+    private JsonGenerator createGenerator(OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        // Поток ответа закрывает Jetty; строки NDJSON разделяем сами
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+        return generator;
+    }
+
+    private void streamMisses(WeatherProvider weatherProvider, List<String> misses, Units units,
+                              String language, JsonGenerator generator) throws IOException {
+        CompletionService<BatchLine> completionService = new ExecutorCompletionService<>(fetchExecutor);
+        List<Future<BatchLine>> futures = new ArrayList<>(misses.size());
+
+        int submitted = 0;
+        try {
+            while (submitted < misses.size() && submitted < MAX_FETCHES_IN_FLIGHT) {
+                futures.add(submitFetch(completionService, weatherProvider, misses.get(submitted++), units, language));
+            }
+
+            for (int completed = 0; completed < misses.size(); completed++) {
+                BatchLine line = completionService.take().get();
+                if (submitted < misses.size()) {
+                    futures.add(submitFetch(completionService, weatherProvider, misses.get(submitted++), units, language));
+                }
+                writeLine(generator, line);
+                generator.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Unexpected batch fetch failure", e.getCause());
+        } finally {
+            // Клиент отключился или обработка прервана: оставшиеся запросы не нужны
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private Future<BatchLine> submitFetch(CompletionService<BatchLine> completionService,
+                                                    WeatherProvider weatherProvider, String city, Units units,
+                                                    String language) {
+        return completionService.submit(() -> {
+            if (!admission.tryAcquire()) {
+                logger.warn("Batch cache miss for city {} rejected by admission control (limit {})", city,
+                        admission.getLimit());
+                return BatchLine.error(city, 503, "Too many pending upstream requests, retry later");
+            }
+            // Перегрузкой считается то же, что и в WeatherController.fetchMiss
+            long started = System.nanoTime();
+            boolean overloaded = false;
+            try {
+                return BatchLine.success(city, weatherProvider.getWeather(city, units, language));
+            } catch (CityNotFoundException | InvalidApiKeyException e) {
+                return BatchLine.error(city, statusFor(e), e.getMessage());
+            } catch (WeatherSDKException e) {
+                overloaded = true;
+                return BatchLine.error(city, statusFor(e), e.getMessage());
+            } catch (Exception e) {
+                return BatchLine.error(city, statusFor(e), e.getMessage());
+            } finally {
+                admission.release(System.nanoTime() - started, overloaded);
+            }
+        });
+    }
+
+    private Set<String> parseCities(Context ctx) throws IOException {
+        Set<String> cities = new LinkedHashSet<>();
+        List<String> fromQuery = ctx.queryParams("city");
+        if (fromQuery != null) {
+            fromQuery.forEach(city -> addCity(cities, city));
+        }
+
+        String body = ctx.body();
+        if (body != null && !body.isBlank()) {
+            Arrays.stream(objectMapper.readValue(body, String[].class)).forEach(city -> addCity(cities, city));
+        }
+        return cities;
+    }
+
+    private void addCity(Set<String> cities, String city) {
+        if (city != null && !city.trim().isEmpty()) {
+            cities.add(city.trim());
+        }
+    }
+
+
+    private int statusFor(Exception e) {
+        if (e instanceof CityNotFoundException) {
+            return 404;
+        } else if (e instanceof InvalidApiKeyException) {
+            return 401;
+        } else if (e instanceof ApiCallLimitExceededException) {
+            return 429;
+        } else if (e instanceof IllegalArgumentException) {
+            return 400;
+        }
+        return 500;
+    }
+
+    private void writeLine(JsonGenerator generator, BatchLine line) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("city", line.city);
+        generator.writeNumberField("status", line.status);
+        if (line.response != null) {
+            generator.writeFieldName("data");
+            WeatherResponseEncoder.write(generator, line.response);
+        } else {
+            generator.writeStringField("error", line.error);
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private Map<String, String> createErrorResponse(String message) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", message);
+        return errorResponse;
+    }
+
+    // Строка NDJSON: {city, status, data} или {city, status, error}
+    private static final class BatchLine {
+        final String city;
+        final int status;
+        final WeatherResponse response;
+        final String error;
+
+        private BatchLine(String city, int status, WeatherResponse response, String error) {
+            this.city = city;
+            this.status = status;
+            this.response = response;
+            this.error = error;
+        }
+
+        static BatchLine success(String city, WeatherResponse response) {
+            return new BatchLine(city, 200, response, null);
+        }
+
+        static BatchLine error(String city, int status, String message) {
+            return new BatchLine(city, status, null, message);
+        }
+    }
+}
@@ -1,56 +1,138 @@
 package com.weather;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.weather.config.Units;
+import com.weather.config.WeatherDescriptions;
 import com.weather.dto.WeatherResponse;
+import com.weather.dto.WeatherResponseEncoder;
 import com.weather.exception.*;
 import com.weather.factory.WeatherProviderFactory;
+import com.weather.model.ApiKeyStatus;
+import com.weather.service.TraceSampler;
+import com.weather.service.UpstreamDispatcher;
 import com.weather.service.WeatherProvider;
 import io.javalin.http.Context;
 import io.javalin.http.HttpStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 
 public class WeatherController {
     private static final Logger logger = LoggerFactory.getLogger(WeatherController.class);
+    private static final JsonFactory jsonFactory = new JsonFactory();
 
-    private final WeatherProvider weatherProvider;
+    private final WeatherProviderFactory factory;
+    private final TraceSampler traceSampler;
+    // Промахи кэша допускаются в пределах адаптивного лимита, попадания обслуживаются всегда
+    private final AdmissionLimiter admission;
 
-    public WeatherController() {
-        WeatherProviderFactory factory = WeatherProviderFactory.getInstance();
-        this.weatherProvider = factory.getWeatherProvider();
-        logger.info("WeatherController initialized with WeatherProvider");
+    /**
+     * @param admission контроль допуска промахов, общий с пакетными запросами
+     */
+    public WeatherController(AdmissionLimiter admission) {
+        this.factory = WeatherProviderFactory.getInstance();
+        this.traceSampler = new TraceSampler(factory.getConfig().getTraceSampleRate());
+        this.admission = admission;
+        logger.info("WeatherController initialized");
+    }
+
+    // Провайдер запрашивается у фабрики на каждый запрос: простаивающий мог быть освобождён
+    private WeatherProvider weatherProvider() {
+        return factory.getWeatherProvider();
     }
 
     public void getWeather(Context ctx) {
         String city = ctx.queryParam("city");
+        String idParam = ctx.queryParam("id");
+        long cityId = 0;
 
-        if (city == null || city.trim().isEmpty()) {
-            ctx.status(HttpStatus.BAD_REQUEST).json(createErrorResponse("City parameter is required"));
+        if (idParam != null) {
+            try {
+                cityId = Long.parseLong(idParam.trim());
+            } catch (NumberFormatException e) {
+                cityId = 0;
+            }
+            if (cityId <= 0) {
+                ctx.status(HttpStatus.BAD_REQUEST).json(createErrorResponse("Id must be a positive number"));
+                return;
+            }
+            city = "id " + cityId;
+        } else if (city == null || city.trim().isEmpty()) {
+            ctx.status(HttpStatus.BAD_REQUEST).json(createErrorResponse("City or id parameter is required"));
             return;
         }
 
+        String language = ctx.queryParam("lang");
         try {
-            logger.info("Received weather request for city: {}", city);
+            WeatherDescriptions.getInstance().languageIndex(language);
+        } catch (IllegalArgumentException e) {
+            ctx.status(HttpStatus.BAD_REQUEST).json(createErrorResponse(
+                    "Lang must be one of: " + String.join(", ", WeatherDescriptions.getInstance().getLanguages())));
+            return;
+        }
 
-            WeatherResponse weatherResponse = weatherProvider.getWeather(city);
+        Units units;
+        try {
+            units = Units.fromString(ctx.queryParam("units"));
+        } catch (IllegalArgumentException e) {
+            ctx.status(HttpStatus.BAD_REQUEST)
+                    .json(createErrorResponse("Units must be one of: standard, metric, imperial"));
+            return;
+        }
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("weather", weatherResponse.getWeather());
-            response.put("temperature", weatherResponse.getTemperature());
-            response.put("visibility", weatherResponse.getVisibility());
-            response.put("wind", weatherResponse.getWind());
-            response.put("datetime", weatherResponse.getDatetime());
-            response.put("sys", weatherResponse.getSys());
-            response.put("timezone", weatherResponse.getTimezone());
-            response.put("name", weatherResponse.getName());
-            response.put("cacheSize", weatherProvider.getCacheSize());
+        Duration deadline = null;
+        String timeoutMs = ctx.queryParam("timeoutMs");
+        if (timeoutMs != null) {
+            try {
+                deadline = Duration.ofMillis(Long.parseLong(timeoutMs.trim()));
+            } catch (NumberFormatException e) {
+                deadline = Duration.ZERO;
+            }
+            if (deadline.isZero() || deadline.isNegative()) {
+                ctx.status(HttpStatus.BAD_REQUEST).json(createErrorResponse("TimeoutMs must be a positive number"));
+                return;
+            }
+        }
 
-            logger.info("Successfully returned weather data for city: {}", city);
-            ctx.json(response);
+        try {
+            WeatherProvider weatherProvider = weatherProvider();
+
+            WeatherResponse weatherResponse = cityId > 0
+                    ? weatherProvider.getCachedWeatherById(cityId, units, language)
+                    : weatherProvider.getCachedWeather(city, units, language);
+            if (weatherResponse == null) {
+                if (!admission.tryAcquire()) {
+                    long retryAfter = admission.retryAfterSeconds();
+                    logger.warn("Cache miss for city {} rejected by admission control (limit {})", city,
+                            admission.getLimit());
+                    ctx.header("Retry-After", String.valueOf(retryAfter));
+                    ctx.status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .json(createErrorResponse("Too many pending upstream requests, retry later"));
+                    return;
+                }
+                weatherResponse = fetchMiss(weatherProvider, city, cityId, units, language, deadline);
+            }
+            String lang = WeatherDescriptions.getInstance().getLanguages()
+                    .get(WeatherDescriptions.getInstance().languageIndex(language));
+
+            byte[] body = encode(weatherResponse, units, lang, weatherProvider.getCacheSize());
+
+            if (traceSampler.sample()) {
+                logger.info("Returned weather data for city: {} (sampled trace)", city);
+            }
+            ctx.contentType("application/json").result(body);
 
+        } catch (IllegalArgumentException e) {
+            ctx.status(HttpStatus.BAD_REQUEST).json(createErrorResponse(e.getMessage()));
         } catch (CityNotFoundException e) {
             logger.warn("City not found: {}", city);
             ctx.status(HttpStatus.NOT_FOUND).json(createErrorResponse(e.getMessage()));
@@ -60,6 +142,9 @@ public class WeatherController {
         } catch (ApiCallLimitExceededException e) {
             logger.error("API call limit exceeded");
             ctx.status(HttpStatus.TOO_MANY_REQUESTS).json(createErrorResponse(e.getMessage()));
+        } catch (DeadlineExceededException e) {
+            logger.warn("Deadline exceeded for city {}: {}", city, e.getMessage());
+            ctx.status(HttpStatus.GATEWAY_TIMEOUT).json(createErrorResponse(e.getMessage()));
         } catch (WeatherSDKException e) {
             logger.error("Weather SDK error for city {}: {}", city, e.getMessage(), e);
             ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(createErrorResponse(e.getMessage()));
@@ -69,12 +154,65 @@ public class WeatherController {
         }
     }
 
+    /**
+     * Промах кэша с учётом в контроле допуска: перегрузкой считаются дедлайн, лимит API
+     * и ошибки связи с upstream, но не неизвестный город и не неверный ключ
+     */
+    private WeatherResponse fetchMiss(WeatherProvider weatherProvider, String city, long cityId, Units units,
+                                      String language, Duration deadline) {
+        long started = System.nanoTime();
+        boolean overloaded = false;
+        try {
+            if (cityId > 0) {
+                return deadline != null
+                        ? weatherProvider.getWeatherById(cityId, units, language, deadline)
+                        : weatherProvider.getWeatherById(cityId, units, language);
+            }
+            return deadline != null
+                    ? weatherProvider.getWeather(city, units, language, deadline)
+                    : weatherProvider.getWeather(city, units, language);
+        } catch (CityNotFoundException | InvalidApiKeyException e) {
+            throw e;
+        } catch (WeatherSDKException e) {
+            overloaded = true;
+            throw e;
+        } finally {
+            admission.release(System.nanoTime() - started, overloaded);
+        }
+    }
+
     public void getCacheInfo(Context ctx) {
         try {
+            WeatherProvider weatherProvider = weatherProvider();
             Map<String, Object> response = new HashMap<>();
             response.put("cacheSize", weatherProvider.getCacheSize());
+            response.put("cacheWeightBytes", weatherProvider.getCacheWeightBytes());
+            response.put("negativeCacheSize", weatherProvider.getNegativeCacheSize());
             response.put("operatingMode", weatherProvider.getMode().name());
             response.put("apiKey", maskApiKey(weatherProvider.getApiKey()));
+            List<ApiKeyStatus> apiKeys = weatherProvider.getApiKeyStatus();
+            if (!apiKeys.isEmpty()) {
+                response.put("apiKeys", apiKeys);
+            }
+
+            UpstreamDispatcher dispatcher = factory.getUpstreamDispatcher();
+            Map<String, Object> upstream = new HashMap<>();
+            upstream.put("maxConcurrent", dispatcher.getMaxConcurrent());
+            upstream.put("backgroundLimit", dispatcher.getBackgroundLimit());
+            upstream.put("interactiveLatencyMs", dispatcher.getInteractiveLatencyMillis());
+            upstream.put("throttleCount", dispatcher.getThrottleCount());
+            upstream.put("lanes", dispatcher.getLaneStatus());
+            response.put("upstream", upstream);
+
+            Map<String, Object> admissionInfo = new HashMap<>();
+            admissionInfo.put("enabled", admission.isEnabled());
+            admissionInfo.put("limit", admission.getLimit());
+            admissionInfo.put("inFlight", admission.getInFlight());
+            admissionInfo.put("admitted", admission.getAdmitted());
+            admissionInfo.put("rejected", admission.getRejected());
+            admissionInfo.put("decreases", admission.getDecreases());
+            admissionInfo.put("missLatencyMs", admission.getLatencyMillis());
+            response.put("admission", admissionInfo);
 
             ctx.json(response);
         } catch (Exception e) {
@@ -84,6 +222,40 @@ public class WeatherController {
         }
     }
 
+    /**
+     * Поля ответа плюс параметры запроса, записанные напрямую генератором без промежуточной Map
+     */
+    private byte[] encode(WeatherResponse weatherResponse, Units units, String lang, int cacheSize)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.writeStartObject();
+            WeatherResponseEncoder.writeFields(generator, weatherResponse);
+            generator.writeStringField("units", units.name().toLowerCase(Locale.ROOT));
+            generator.writeStringField("lang", lang);
+            generator.writeNumberField("cacheSize", cacheSize);
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Готовность к трафику: 503, пока идёт прогрев кэша при старте
+     */
+    public void getReadiness(Context ctx) {
+        WeatherProvider weatherProvider = weatherProvider();
+        boolean ready = weatherProvider.isReady();
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", ready ? "ready" : "warming");
+        response.put("warmupTotal", weatherProvider.getWarmupTotal());
+        response.put("warmupCompleted", weatherProvider.getWarmupCompleted());
+        response.put("warmupFailed", weatherProvider.getWarmupFailed());
+        response.put("cacheSize", weatherProvider.getCacheSize());
+
+        ctx.status(ready ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).json(response);
+    }
+
     private Map<String, String> createErrorResponse(String message) {
         Map<String, String> errorResponse = new HashMap<>();
         errorResponse.put("error", message);
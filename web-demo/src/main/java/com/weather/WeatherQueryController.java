@@ -0,0 +1,144 @@
+package com.weather;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.weather.config.Units;
+import com.weather.factory.WeatherProviderFactory;
+import com.weather.model.CityMetricValue;
+import com.weather.model.MetricAggregate;
+import com.weather.model.WeatherMetric;
+import com.weather.service.WeatherProvider;
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Сводные запросы по городам в кэше для дашбордов, без обращения к API:
+ * <ul>
+ *     <li>/weather/query?metric=temp&amp;top=20 - самые высокие значения (order=asc - самые низкие);</li>
+ *     <li>/weather/query?metric=wind_speed&amp;groupBy=country - число, min, max и среднее по странам;</li>
+ *     <li>/weather/query?metric=temp&amp;country=NO - сводка по всем городам или одной стране.</li>
+ * </ul>
+ * Значения в единицах units; ответ пишется генератором напрямую.
+ */
+public class WeatherQueryController {
+    private static final Logger logger = LoggerFactory.getLogger(WeatherQueryController.class);
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final int MAX_TOP = 1000;
+
+    private final WeatherProviderFactory factory;
+
+    public WeatherQueryController() {
+        this.factory = WeatherProviderFactory.getInstance();
+        logger.info("WeatherQueryController initialized");
+    }
+
+    public void query(Context ctx) {
+        WeatherMetric metric;
+        try {
+            metric = WeatherMetric.valueOf(String.valueOf(ctx.queryParam("metric")).trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            ctx.status(HttpStatus.BAD_REQUEST).json(Map.of("error",
+                    "Metric must be one of: temp, feels_like, wind_speed, visibility"));
+            return;
+        }
+
+        Units units;
+        try {
+            units = Units.fromString(ctx.queryParam("units"));
+        } catch (IllegalArgumentException e) {
+            ctx.status(HttpStatus.BAD_REQUEST)
+                    .json(Map.of("error", "Units must be one of: standard, metric, imperial"));
+            return;
+        }
+
+        String top = ctx.queryParam("top");
+        String groupBy = ctx.queryParam("groupBy");
+        int limit = 0;
+        if (top != null) {
+            try {
+                limit = Integer.parseInt(top.trim());
+            } catch (NumberFormatException e) {
+                limit = 0;
+            }
+            if (limit <= 0 || limit > MAX_TOP) {
+                ctx.status(HttpStatus.BAD_REQUEST).json(Map.of("error", "Top must be between 1 and " + MAX_TOP));
+                return;
+            }
+        }
+        if (groupBy != null && !"country".equalsIgnoreCase(groupBy.trim())) {
+            ctx.status(HttpStatus.BAD_REQUEST).json(Map.of("error", "GroupBy supports only: country"));
+            return;
+        }
+
+        try {
+            WeatherProvider weatherProvider = factory.getWeatherProvider();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+            try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+                generator.writeStartObject();
+                generator.writeStringField("metric", metric.name().toLowerCase(Locale.ROOT));
+                generator.writeStringField("units", units.name().toLowerCase(Locale.ROOT));
+                if (limit > 0) {
+                    boolean highest = !"asc".equalsIgnoreCase(ctx.queryParam("order"));
+                    writeCities(generator, weatherProvider.getTopCities(metric, limit, highest, units));
+                } else if (groupBy != null) {
+                    generator.writeArrayFieldStart("groups");
+                    for (MetricAggregate group : weatherProvider.getAggregateByCountry(metric, units)) {
+                        generator.writeStartObject();
+                        generator.writeStringField("country", group.getGroup());
+                        writeAggregateFields(generator, group);
+                        generator.writeEndObject();
+                    }
+                    generator.writeEndArray();
+                } else {
+                    String country = ctx.queryParam("country");
+                    if (country != null) {
+                        generator.writeStringField("country", country.trim().toUpperCase(Locale.ROOT));
+                    }
+                    writeAggregateFields(generator, weatherProvider.getAggregate(metric, country, units));
+                }
+                generator.writeEndObject();
+            }
+            ctx.contentType("application/json").result(out.toByteArray());
+        } catch (Exception e) {
+            logger.error("Error running cache query for metric {}: {}", metric, e.getMessage(), e);
+            ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).json(Map.of("error", "Internal server error"));
+        }
+    }
+
+    private void writeCities(JsonGenerator generator, List<CityMetricValue> cities) throws IOException {
+        generator.writeArrayFieldStart("cities");
+        for (CityMetricValue city : cities) {
+            generator.writeStartObject();
+            generator.writeStringField("city", city.getCity());
+            generator.writeStringField("name", city.getName());
+            generator.writeStringField("country", city.getCountry());
+            generator.writeNumberField("value", city.getValue());
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    // Пустая группа даёт null вместо NaN, которого нет в JSON
+    private void writeAggregateFields(JsonGenerator generator, MetricAggregate aggregate) throws IOException {
+        generator.writeNumberField("count", aggregate.getCount());
+        writeNumber(generator, "min", aggregate.getMin());
+        writeNumber(generator, "max", aggregate.getMax());
+        writeNumber(generator, "average", aggregate.getAverage());
+    }
+
+    private void writeNumber(JsonGenerator generator, String name, double value) throws IOException {
+        if (Double.isNaN(value)) {
+            generator.writeNullField(name);
+        } else {
+            generator.writeNumberField(name, value);
+        }
+    }
+}
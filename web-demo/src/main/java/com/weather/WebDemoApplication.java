@@ -2,11 +2,17 @@ package com.weather;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import com.weather.config.SdkConfig;
+import com.weather.factory.WeatherProviderFactory;
 import io.javalin.Javalin;
 import io.javalin.json.JavalinJackson;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.Executors;
+
 /**
  * Веб-демо приложение на Javalin
  */
@@ -26,6 +32,10 @@ public class WebDemoApplication {
             logger.info("Available endpoints:");
             logger.info("  GET http://localhost:{}/weather?city=London", PORT);
             logger.info("  GET http://localhost:{}/weather/cache/info", PORT);
+            logger.info("  GET http://localhost:{}/weather/batch?city=London&city=Paris", PORT);
+            logger.info("  GET http://localhost:{}/ready", PORT);
+            logger.info("  GET http://localhost:{}/cities/suggest?prefix=Lon", PORT);
+            logger.info("  GET http://localhost:{}/weather/query?metric=temp&top=20", PORT);
             logger.info("Press CTRL+C to stop the application...");
 
             // Add shutdown hook
@@ -41,17 +51,41 @@ public class WebDemoApplication {
     }
 
     public static Javalin createAndStartServer() {
+        boolean virtualThreads = WeatherProviderFactory.getInstance().getConfig().isVirtualThreadsEnabled();
+
         Javalin app = Javalin.create(config -> {
             config.jsonMapper(new JavalinJackson(objectMapper));
             config.plugins.enableDevLogging();
+            if (virtualThreads) {
+                // Акцепторы и селекторы остаются на платформенных потоках пула,
+                // обработчики запросов Jetty запускает в виртуальных потоках
+                QueuedThreadPool threadPool = new QueuedThreadPool();
+                threadPool.setName("JettyServerThreadPool");
+                threadPool.setVirtualThreadsExecutor(Executors.newThreadPerTaskExecutor(
+                        Thread.ofVirtual().name("JettyVirtual-", 0).factory()));
+                config.jetty.server(() -> new Server(threadPool));
+            }
         });
+        logger.info("Request handling on {} threads", virtualThreads ? "virtual" : "platform");
 
         // Initialize controller
-        WeatherController weatherController = new WeatherController();
+        // Один лимит промахов на /weather и /weather/batch: оба нагружают один и тот же upstream
+        SdkConfig sdkConfig = WeatherProviderFactory.getInstance().getConfig();
+        AdmissionLimiter admission = new AdmissionLimiter(sdkConfig.getAdmissionInitialLimit(),
+                sdkConfig.getAdmissionMaxLimit(), sdkConfig.getAdmissionLatencyTargetMs());
+        WeatherController weatherController = new WeatherController(admission);
+        WeatherBatchController batchController = new WeatherBatchController(admission);
+        CityController cityController = new CityController();
+        WeatherQueryController queryController = new WeatherQueryController();
 
         // Setup routes
         app.get("/weather", weatherController::getWeather);
         app.get("/weather/cache/info", weatherController::getCacheInfo);
+        app.get("/weather/batch", batchController::getWeatherBatch);
+        app.post("/weather/batch", batchController::getWeatherBatch);
+        app.get("/ready", weatherController::getReadiness);
+        app.get("/cities/suggest", cityController::suggest);
+        app.get("/weather/query", queryController::query);
 
         // Exception handling
         app.exception(Exception.class, (e, ctx) -> {
@@ -60,9 +94,24 @@ public class WebDemoApplication {
         });
 
         app.start(PORT);
+        initProviderInBackground();
         return app;
     }
 
+    /**
+     * Провайдер (кэш, прогрев, опрос) создаётся после того, как сервер начал принимать запросы.
+     * Первый запрос, пришедший раньше, дождётся создания провайдера в фабрике.
+     */
+    private static void initProviderInBackground() {
+        Thread.ofPlatform().daemon().name("WeatherProviderInit").start(() -> {
+            try {
+                WeatherProviderFactory.getInstance().getWeatherProvider();
+            } catch (Exception e) {
+                logger.error("Failed to initialize WeatherProvider", e);
+            }
+        });
+    }
+
     // Helper class for error responses
     public static class ErrorResponse {
         private final String error;